@@ -0,0 +1,35 @@
+package com.example.pim.config;
+
+import com.example.pim.service.AuditPolicyService;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 操作日志审计策略配置
+ * 规则的键为“操作类型”或“操作类型:对象类型”，后者优先；没有匹配规则的操作使用defaults。
+ * coalesceWindowInMs为合并窗口长度，maxPending为同时处于合并窗口中的记录上限，超过时直接记录。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.audit-policy")
+public class AuditPolicyProperties {
+
+    private Rule defaults = new Rule();
+
+    private long coalesceWindowInMs = 60000;
+
+    private int maxPending = 10000;
+
+    private Map<String, Rule> rules = new HashMap<>();
+
+    @Data
+    public static class Rule {
+        private AuditPolicyService.Mode mode = AuditPolicyService.Mode.ALWAYS;
+        // 抽样比例，仅SAMPLED模式使用
+        private double sampleRate = 0.1;
+    }
+}
@@ -1,10 +1,16 @@
 package com.example.pim.config;
 
+import com.example.pim.service.TokenRevocationService;
+import com.example.pim.service.UserSecurityVersionService;
+import com.example.pim.util.AuthenticatedUser;
 import com.example.pim.util.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -17,32 +23,49 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationFilter.class);
 
+    // 按角色缓存的不可变权限列表，避免每次请求重新创建
+    private static final ConcurrentHashMap<String, List<GrantedAuthority>> AUTHORITIES = new ConcurrentHashMap<>();
+
     @Autowired
     private JwtTokenProvider tokenProvider;
 
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Autowired
+    private UserSecurityVersionService userSecurityVersionService;
+
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         try {
-            String jwt = getJwtFromRequest(request);
+            String jwt = tokenProvider.resolveToken(request);
 
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromJWT(jwt);
+            // 令牌只解析、验签一次，最近验证过的令牌直接命中缓存
+            Claims claims = StringUtils.hasText(jwt) ? tokenProvider.getVerifiedClaims(jwt) : null;
+            if (claims != null && !tokenRevocationService.isRevoked(claims)) {
+                UserDetails userDetails = claims.get(JwtTokenProvider.CLAIM_SECURITY_VERSION) != null
+                        ? buildUserDetails(claims)
+                        : userDetailsService.loadUserByUsername(claims.getSubject()); // 兼容未携带安全版本号的旧令牌
 
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                if (userDetails != null) {
+                    UsernamePasswordAuthenticationToken authentication =
+                            new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
 
-                SecurityContextHolder.getContext().setAuthentication(authentication);
+                    SecurityContextHolder.getContext().setAuthentication(authentication);
+                }
             }
         } catch (Exception ex) {
             logger.error("Could not set user authentication in security context", ex);
@@ -51,11 +74,25 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
-    private String getJwtFromRequest(HttpServletRequest request) {
-        String bearerToken = request.getHeader("Authorization");
-        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
-            return bearerToken.substring(7);
+    /**
+     * 根据令牌声明构建用户信息
+     * 仅校验安全版本号：用户被禁用、锁定、删除或修改密码后版本号变化，旧令牌随之失效
+     */
+    private UserDetails buildUserDetails(Claims claims) {
+        Number userId = claims.get(JwtTokenProvider.CLAIM_USER_ID, Number.class);
+        Number version = claims.get(JwtTokenProvider.CLAIM_SECURITY_VERSION, Number.class);
+        Boolean enabled = claims.get(JwtTokenProvider.CLAIM_ENABLED, Boolean.class);
+        if (userId == null || Boolean.FALSE.equals(enabled)) {
+            return null;
+        }
+        if (!userSecurityVersionService.isCurrent(userId.longValue(), version.intValue())) {
+            logger.debug("JWT security version is stale for user {}", claims.getSubject());
+            return null;
         }
-        return null;
+
+        String role = claims.get(JwtTokenProvider.CLAIM_ROLE, String.class);
+        List<GrantedAuthority> authorities = AUTHORITIES.computeIfAbsent(role != null ? role : "ROLE_USER",
+                r -> Collections.singletonList(new SimpleGrantedAuthority(r)));
+        return new AuthenticatedUser(userId.longValue(), claims.getSubject(), "", true, authorities);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.example.pim.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 限流策略配置
+ * 每个策略对应一个令牌桶：capacity为桶容量（允许的突发请求数），refillPerMinute为每分钟补充的令牌数
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.rate-limit")
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    private Map<String, Policy> policies = new HashMap<>();
+
+    @Data
+    public static class Policy {
+        private int capacity = 10;
+        private int refillPerMinute = 10;
+    }
+}
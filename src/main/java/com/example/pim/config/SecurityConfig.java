@@ -1,6 +1,9 @@
 package com.example.pim.config;
 
+import com.example.pim.util.BoundedPasswordEncoder;
+import com.example.pim.util.Md5PasswordEncoder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -12,9 +15,13 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Configuration
 @EnableWebSecurity
 @EnableGlobalMethodSecurity(prePostEnabled = true)
@@ -23,35 +30,36 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     @Autowired
     private UserDetailsService userDetailsService;
 
+    @Value("${app.passwordHash.bcryptStrength:10}")
+    private int bcryptStrength;
+
+    // 哈希线程数，0表示使用CPU核数
+    @Value("${app.passwordHash.threads:0}")
+    private int hashThreads;
+
+    // 等待哈希的最大排队数，超过后立即拒绝
+    @Value("${app.passwordHash.queueCapacity:64}")
+    private int hashQueueCapacity;
+
+    @Value("${app.passwordHash.timeoutInMs:5000}")
+    private long hashTimeoutInMs;
+
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter() {
         return new JwtAuthenticationFilter();
     }
 
-    @Bean
-    public PasswordEncoder passwordEncoder() {
-        // 使用MD5加密方式保存密码
-        return new PasswordEncoder() {
-            @Override
-            public String encode(CharSequence rawPassword) {
-                try {
-                    java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
-                    byte[] array = md.digest(rawPassword.toString().getBytes());
-                    StringBuffer sb = new StringBuffer();
-                    for (int i = 0; i < array.length; ++i) {
-                        sb.append(Integer.toHexString((array[i] & 0xFF) | 0x100).substring(1, 3));
-                    }
-                    return sb.toString();
-                } catch (java.security.NoSuchAlgorithmException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-
-            @Override
-            public boolean matches(CharSequence rawPassword, String encodedPassword) {
-                return encode(rawPassword).equals(encodedPassword);
-            }
-        };
+    @Bean(destroyMethod = "shutdown")
+    public BoundedPasswordEncoder passwordEncoder() {
+        // 新密码使用BCrypt保存；没有算法前缀的旧密码按MD5校验，登录成功后自动升级
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put("bcrypt", new BCryptPasswordEncoder(bcryptStrength));
+        DelegatingPasswordEncoder delegatingEncoder = new DelegatingPasswordEncoder("bcrypt", encoders);
+        delegatingEncoder.setDefaultPasswordEncoderForMatches(new Md5PasswordEncoder());
+
+        // 哈希计算放在独立的有界线程池中执行，默认线程数等于CPU核数
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        return new BoundedPasswordEncoder(delegatingEncoder, threads, hashQueueCapacity, hashTimeoutInMs);
     }
 
     @Override
@@ -2,17 +2,32 @@ package com.example.pim.controller;
 
 import com.example.pim.entity.AdminOperationLog;
 import com.example.pim.service.AdminOperationLogService;
+import com.example.pim.service.AuditLogStreamService;
+import com.example.pim.util.AuditLogExportWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -21,11 +36,21 @@ import java.util.Map;
 @PreAuthorize("hasRole('ADMIN')")
 public class AdminLogController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AdminLogController.class);
+
     @Autowired
     private AdminOperationLogService adminOperationLogService;
 
+    @Autowired
+    private AuditLogStreamService auditLogStreamService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * 获取管理员操作日志列表（支持分页、搜索和筛选）
+     * 合并记录在合并窗口结束时才写入，operationTime是第一次操作的时间，可能早于已经可见的日志；
+     * 按operationTime轮询新日志的调用方需要把查询范围向前重叠一个合并窗口
      */
     @GetMapping
     public ResponseEntity<?> getOperationLogs(
@@ -36,7 +61,9 @@ public class AdminLogController {
             @RequestParam(required = false) String objectType,     // 操作对象类型筛选
             @RequestParam(required = false) String startTime,      // 开始时间筛选
             @RequestParam(required = false) String endTime,        // 结束时间筛选
-            @RequestParam(required = false) Boolean success        // 操作结果筛选
+            @RequestParam(required = false) Boolean success,       // 操作结果筛选
+            @RequestParam(required = false) String cursor,         // 游标分页：首页传空字符串，之后传返回的nextCursor
+            @RequestParam(defaultValue = "false") boolean withTotal // 游标分页时是否返回近似总数
     ) {
         try {
             // 创建分页请求，默认按操作时间降序排序
@@ -59,6 +86,11 @@ public class AdminLogController {
                 endDateTime = LocalDateTime.parse(endTime, formatter);
             }
 
+            if (cursor != null) {
+                return ResponseEntity.ok(findLogsByCursor(adminUsername, operationType, objectType,
+                        startDateTime, endDateTime, success, cursor, size, withTotal));
+            }
+
             // 获取日志列表
             Page<AdminOperationLog> logPage = adminOperationLogService.findLogs(
                     adminUsername, operationType, objectType, startDateTime, endDateTime, success, pageable);
@@ -72,11 +104,141 @@ public class AdminLogController {
             response.put("pageSize", size);
 
             return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("获取操作日志失败: " + e.getMessage());
         }
     }
 
+    // 游标分页，不执行COUNT查询，深翻页的开销与首页相同
+    private Map<String, Object> findLogsByCursor(String adminUsername, String operationType, String objectType,
+                                                 LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                                                 String cursor, int size, boolean withTotal) {
+        LocalDateTime cursorTime = null;
+        Long cursorId = null;
+        if (!cursor.isEmpty()) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                cursorTime = LocalDateTime.parse(raw.substring(0, separator));
+                cursorId = Long.parseLong(raw.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+        }
+
+        Slice<AdminOperationLog> slice = adminOperationLogService.findLogsBefore(adminUsername, operationType,
+                objectType, startTime, endTime, success, cursorTime, cursorId, Math.max(1, Math.min(size, 200)));
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("logs", slice.getContent());
+        response.put("pageSize", size);
+        String nextCursor = null;
+        if (slice.hasNext()) {
+            AdminOperationLog last = slice.getContent().get(slice.getNumberOfElements() - 1);
+            nextCursor = encodeCursor(last.getOperationTime(), last.getId());
+        }
+        response.put("nextCursor", nextCursor);
+        if (withTotal) {
+            response.put("approximateTotal", adminOperationLogService.estimateLogCount(
+                    adminUsername, operationType, objectType, startTime, endTime, success));
+        }
+        return response;
+    }
+
+    // 游标对客户端不透明：base64url(操作时间|ID)
+    private static String encodeCursor(LocalDateTime time, Long id) {
+        String raw = time + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 导出操作日志（CSV或NDJSON，可选gzip压缩）
+     * 从数据库游标逐条读取并直接写入响应，内存占用与导出的行数无关
+     */
+    @GetMapping("/export")
+    public void exportLogs(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String adminUsername,
+            @RequestParam(required = false) String operationType,
+            @RequestParam(required = false) String objectType,
+            @RequestParam(required = false) String startTime,
+            @RequestParam(required = false) String endTime,
+            @RequestParam(required = false) Boolean success,
+            HttpServletResponse response
+    ) throws IOException {
+        AuditLogExportWriter.Format exportFormat;
+        LocalDateTime startDateTime = null;
+        LocalDateTime endDateTime = null;
+        try {
+            exportFormat = AuditLogExportWriter.Format.parse(format);
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+            if (startTime != null && !startTime.trim().isEmpty()) {
+                startDateTime = LocalDateTime.parse(startTime, formatter);
+            }
+            if (endTime != null && !endTime.trim().isEmpty()) {
+                endDateTime = LocalDateTime.parse(endTime, formatter);
+            }
+        } catch (RuntimeException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("导出参数错误: " + e.getMessage());
+            return;
+        }
+
+        String fileName = "admin-logs-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"))
+                + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip" : exportFormat.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+
+        // 响应已开始写出后无法再返回错误状态：导出失败时不写出缓冲的内容和gzip结尾，异常抛给容器后由容器直接断开连接，
+        // 不发送分块传输的结束标记，客户端能够发现下载不完整
+        try (AuditLogExportWriter writer = new AuditLogExportWriter(exportFormat, gzip, response.getOutputStream(),
+                objectMapper)) {
+            try {
+                adminOperationLogService.exportLogs(adminUsername, operationType, objectType,
+                        startDateTime, endDateTime, success, writer::write);
+                writer.finish();
+            } catch (UncheckedIOException | IOException e) {
+                if (!writer.isOutputFailed()) {
+                    throw e;
+                }
+                // 客户端中途断开
+                logger.warn("Admin log export aborted: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 实时推送新的操作日志（Server-Sent Events）
+     * 事件ID为日志ID，断线重连（包括应用重启后）时通过Last-Event-ID请求头从中断处继续
+     * 合并记录在写入时推送，operationTime早于之前推送的日志，但日志ID在写入时分配，续传不会遗漏
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamLogs(
+            @RequestParam(required = false) String adminUsername,
+            @RequestParam(required = false) String operationType,
+            @RequestParam(required = false) String objectType,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId
+    ) {
+        try {
+            SseEmitter emitter = auditLogStreamService.subscribe(adminUsername, operationType, objectType,
+                    lastEventId);
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                    // 禁止反向代理缓冲事件流
+                    .header("X-Accel-Buffering", "no")
+                    .body(emitter);
+        } catch (IllegalStateException e) {
+            // 事件流响应没有可用的错误消息体，只返回状态码
+            logger.warn("Admin log stream rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
     /**
      * 获取操作日志统计信息
      */
@@ -1,75 +1,74 @@
 package com.example.pim.controller;
 
 import com.example.pim.entity.User;
+import com.example.pim.service.CaptchaService;
+import com.example.pim.service.RateLimitService;
+import com.example.pim.service.TokenRevocationService;
 import com.example.pim.service.UserService;
 import com.example.pim.util.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/auth")
 public class AuthController {
 
-    @Autowired
-    private AuthenticationManager authenticationManager;
-
     @Autowired
     private UserService userService;
 
     @Autowired
     private JwtTokenProvider tokenProvider;
 
+    @Autowired
+    private TokenRevocationService tokenRevocationService;
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private CaptchaService captchaService;
+
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest, HttpSession session) {
+    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+                                              HttpServletRequest request) {
+        // 按IP和用户名限流
+        long waitMillis = rateLimitService.tryAcquire("login-ip", request.getRemoteAddr());
+        if (waitMillis == 0) {
+            waitMillis = rateLimitService.tryAcquire("login-user", loginRequest.getUsername());
+        }
+        if (waitMillis > 0) {
+            return tooManyRequests(waitMillis);
+        }
+
         try {
             // 验证验证码
             if (loginRequest.getCaptcha() == null || loginRequest.getCaptcha().trim().isEmpty()) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("请输入验证码");
             }
 
-            String sessionCaptcha = (String) session.getAttribute("captcha");
-            if (sessionCaptcha == null) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("验证码已过期，请刷新");
+            // 校验签名的验证码挑战，不依赖session；挑战只能使用一次
+            if (!captchaService.verifyChallenge(loginRequest.getCaptchaId(), loginRequest.getCaptcha(), request)) {
+                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("验证码错误或已过期，请刷新");
             }
 
-            if (!sessionCaptcha.equalsIgnoreCase(loginRequest.getCaptcha().trim())) {
-                return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("验证码错误");
-            }
-
-            // 验证成功后，移除session中的验证码
-            session.removeAttribute("captcha");
-
             // 验证用户名和密码
-            // 注意：authenticate方法内部已经处理了登录失败次数统计和账户锁定逻辑
-            User user = userService.authenticate(loginRequest.getUsername(), loginRequest.getPassword());
-
-            // 更新最后登录时间
-            userService.updateLastLoginTime(user.getId());
+            // 注意：login方法只查询一次用户，内部处理了登录失败次数统计（按用户和IP）、账户锁定和最后登录时间
+            User user = userService.login(loginRequest.getUsername(), loginRequest.getPassword(),
+                    request.getRemoteAddr());
 
-            // 创建Spring Security认证对象
-            Authentication authentication = authenticationManager.authenticate(
-                    new UsernamePasswordAuthenticationToken(
-                            loginRequest.getUsername(),
-                            loginRequest.getPassword()
-                    )
-            );
-
-            // 设置认证信息到上下文
-            SecurityContextHolder.getContext().setAuthentication(authentication);
-
-            // 生成JWT令牌
-            String jwt = tokenProvider.generateToken(authentication);
+            // 生成JWT令牌（密码已校验，无需再经过AuthenticationManager认证一次）
+            String jwt = tokenProvider.generateToken(user);
 
             // 构建响应对象
             Map<String, Object> response = new HashMap<>();
@@ -80,6 +79,9 @@ public class AuthController {
             response.put("fullName", user.getFullName());
 
             return ResponseEntity.ok(response);
+        } catch (RejectedExecutionException e) {
+            // 密码哈希线程池已满，快速失败
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (RuntimeException e) {
             // 直接返回异常消息，包括账户锁定的具体提示
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(e.getMessage());
@@ -87,7 +89,14 @@ public class AuthController {
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody UserRegistrationRequest registrationRequest) {
+    public ResponseEntity<?> registerUser(@Valid @RequestBody UserRegistrationRequest registrationRequest,
+                                          HttpServletRequest request) {
+        // 按IP限流
+        long waitMillis = rateLimitService.tryAcquire("register-ip", request.getRemoteAddr());
+        if (waitMillis > 0) {
+            return tooManyRequests(waitMillis);
+        }
+
         try {
             // 检查用户名是否已存在
             if (userService.existsByUsername(registrationRequest.getUsername())) {
@@ -123,11 +132,28 @@ public class AuthController {
             response.put("message", "注册成功，请检查您的邮箱完成验证");
 
             return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(HttpServletRequest request) {
+        String jwt = tokenProvider.resolveToken(request);
+        Claims claims = jwt != null ? tokenProvider.getVerifiedClaims(jwt) : null;
+        if (claims == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("令牌无效或已过期");
+        }
+
+        // 撤销当前令牌
+        tokenRevocationService.revoke(claims);
+        SecurityContextHolder.clearContext();
+
+        return ResponseEntity.ok("已退出登录");
+    }
+
     @GetMapping("/verify-email")
     public ResponseEntity<?> verifyEmail(@RequestParam String token) {
         try {
@@ -142,11 +168,19 @@ public class AuthController {
         }
     }
 
+    // 请求过于频繁，返回429并提示重试等待秒数
+    private ResponseEntity<?> tooManyRequests(long waitMillis) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000))
+                .body("请求过于频繁，请稍后再试");
+    }
+
     // 登录请求类
     public static class LoginRequest {
         private String username;
         private String password;
         private String captcha;
+        private String captchaId;
 
         // Getters and Setters
         public String getUsername() {
@@ -172,6 +206,14 @@ public class AuthController {
         public void setCaptcha(String captcha) {
             this.captcha = captcha;
         }
+
+        public String getCaptchaId() {
+            return captchaId;
+        }
+
+        public void setCaptchaId(String captchaId) {
+            this.captchaId = captchaId;
+        }
     }
 
     // 用户注册请求类
@@ -1,6 +1,13 @@
 package com.example.pim.controller;
 
+import com.example.pim.service.CaptchaService;
+import com.example.pim.service.RateLimitService;
 import com.example.pim.util.CaptchaUtil;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -8,7 +15,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestMapping;
 
-import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -17,20 +24,37 @@ import java.util.Map;
 @RequestMapping("/api/captcha")
 public class CaptchaController {
 
+    private static final String CAPTCHA_ID_HEADER = "X-Captcha-Id";
+
+    @Autowired
+    private RateLimitService rateLimitService;
+
+    @Autowired
+    private CaptchaService captchaService;
+
     /**
      * 生成验证码
      */
     @GetMapping("/generate")
-    public ResponseEntity<?> generateCaptcha(HttpSession session) {
+    public ResponseEntity<?> generateCaptcha(HttpServletRequest request) {
+        // 按IP限流，避免被滥用生成大量图片
+        long waitMillis = rateLimitService.tryAcquire("captcha-ip", request.getRemoteAddr());
+        if (waitMillis > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000))
+                    .body("请求过于频繁，请稍后再试");
+        }
+
         try {
-            CaptchaUtil.CaptchaResult captchaResult = CaptchaUtil.generateCaptcha();
+            // 从预生成的验证码池中取出
+            CaptchaUtil.CaptchaResult captchaResult = captchaService.nextCaptcha();
             
-            // 将验证码保存到session中，设置5分钟过期
-            session.setAttribute("captcha", captchaResult.getCode());
-            session.setMaxInactiveInterval(5 * 60); // 5分钟过期
+            // 返回签名的挑战ID代替session保存验证码，5分钟过期
+            String captchaId = captchaService.issueChallenge(captchaResult, request);
             
             Map<String, String> response = new HashMap<>();
             response.put("image", captchaResult.getImageBase64());
+            response.put("captchaId", captchaId);
             
             return ResponseEntity.ok(response);
         } catch (IOException e) {
@@ -39,24 +63,46 @@ public class CaptchaController {
         }
     }
 
+    /**
+     * 生成验证码，直接返回PNG图片，挑战ID放在响应头中
+     */
+    @GetMapping("/image")
+    public ResponseEntity<?> generateCaptchaImage(HttpServletRequest request) {
+        long waitMillis = rateLimitService.tryAcquire("captcha-ip", request.getRemoteAddr());
+        if (waitMillis > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf((waitMillis + 999) / 1000))
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("请求过于频繁，请稍后再试");
+        }
+
+        try {
+            CaptchaUtil.CaptchaResult captchaResult = captchaService.nextCaptcha();
+            String captchaId = captchaService.issueChallenge(captchaResult, request);
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .cacheControl(CacheControl.noStore())
+                    .header(CAPTCHA_ID_HEADER, captchaId)
+                    .body(captchaResult.getImageBytes());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return ResponseEntity.status(500).contentType(MediaType.TEXT_PLAIN).body("生成验证码失败");
+        }
+    }
+
     /**
      * 验证验证码
      */
     @PostMapping("/validate")
-    public ResponseEntity<?> validateCaptcha(@RequestParam String code, HttpSession session) {
-        String sessionCaptcha = (String) session.getAttribute("captcha");
-        
-        if (sessionCaptcha == null) {
-            return ResponseEntity.badRequest().body("验证码已过期，请刷新");
+    public ResponseEntity<?> validateCaptcha(@RequestParam String code,
+                                             @RequestParam(required = false) String captchaId,
+                                             HttpServletRequest request) {
+        // 挑战只能校验一次，校验后需重新获取验证码
+        if (!captchaService.verifyChallenge(captchaId, code, request)) {
+            return ResponseEntity.badRequest().body("验证码错误或已过期，请刷新");
         }
         
-        if (code == null || !sessionCaptcha.equalsIgnoreCase(code)) {
-            return ResponseEntity.badRequest().body("验证码错误");
-        }
-        
-        // 验证成功后，可以移除session中的验证码
-        session.removeAttribute("captcha");
-        
         Map<String, Boolean> response = new HashMap<>();
         response.put("valid", true);
         
@@ -2,6 +2,7 @@ package com.example.pim.controller;
 
 import com.example.pim.entity.User;
 import com.example.pim.repository.UserRepository;
+import com.example.pim.service.UserSearchIndexService;
 import com.example.pim.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -18,11 +19,14 @@ public class UserController {
 
     private final UserService userService;
     private final UserRepository userRepository;
+    private final UserSearchIndexService userSearchIndexService;
 
     @Autowired
-    public UserController(UserService userService, UserRepository userRepository) {
+    public UserController(UserService userService, UserRepository userRepository,
+                          UserSearchIndexService userSearchIndexService) {
         this.userService = userService;
         this.userRepository = userRepository;
+        this.userSearchIndexService = userSearchIndexService;
     }
 
     // 检查用户名是否可用（支持排除当前用户ID）
@@ -105,6 +109,8 @@ public class UserController {
         }
         
         userRepository.save(user);
+        // 姓名、邮箱变更后更新用户搜索索引
+        userSearchIndexService.index(user);
         
         return ResponseEntity.ok("用户信息更新成功");
     }
@@ -315,6 +315,26 @@ public class UserManagementController {
         }
     }
 
+    // 强制用户下线，使其已签发的所有令牌失效
+    @PostMapping("/{id}/force-logout")
+    public ResponseEntity<?> forceLogout(@PathVariable Long id, HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        try {
+            User user = userService.getUserById(id);
+            userService.forceLogout(id);
+
+            // 记录强制下线日志
+            adminOperationLogService.logUpdate(authentication, "USER_SESSION", id, user.getUsername(), true, request);
+
+            return ResponseEntity.ok("用户已被强制下线");
+        } catch (Exception e) {
+            // 记录失败日志
+            adminOperationLogService.logUpdate(authentication, "USER_SESSION", id, "未知用户", false, request);
+
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
     // 密码更新请求类
     public static class PasswordUpdateRequest {
         private String newPassword;
@@ -0,0 +1,42 @@
+package com.example.pim.entity;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "admin_log_rollups", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_admin_log_rollup", columnNames = {
+                "bucket_minutes", "bucket_start", "admin_username", "operation_type", "object_type", "result"})
+})
+public class AdminLogRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 统计粒度（分钟）：1 按分钟，60 按小时
+    @Column(name = "bucket_minutes", nullable = false)
+    private Integer bucketMinutes;
+
+    // 统计区间的开始时间
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "admin_username", nullable = false, length = 50)
+    private String adminUsername;
+
+    @Column(name = "operation_type", nullable = false, length = 20)
+    private String operationType;
+
+    @Column(name = "object_type", nullable = false, length = 50)
+    private String objectType;
+
+    @Column(name = "result", nullable = false, length = 20)
+    private String result;
+
+    // 区间内的日志数量
+    @Column(name = "log_count", nullable = false)
+    private Long logCount;
+}
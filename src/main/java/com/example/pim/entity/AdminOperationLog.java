@@ -6,6 +6,7 @@ import java.time.LocalDateTime;
 
 @Data
 @Entity
+// admin_operation_logs 是合并各时间分区的视图，索引建在各分区表上，见AuditLogPartitionServiceImpl
 @Table(name = "admin_operation_logs")
 public class AdminOperationLog {
 
@@ -17,16 +18,19 @@ public class AdminOperationLog {
     @Column(name = "admin_id", nullable = false)
     private Long adminId;
 
-    // 操作的管理员用户名
-    @Column(name = "admin_username", nullable = false, length = 50)
+    // 操作的管理员用户名（数据库中保存字典编码）
+    @Convert(converter = AuditDictionaryConverters.AdminUsername.class)
+    @Column(name = "admin_username", nullable = false)
     private String adminUsername;
 
-    // 操作类型（CREATE, UPDATE, DELETE, QUERY）
-    @Column(name = "operation_type", nullable = false, length = 20)
+    // 操作类型（CREATE, UPDATE, DELETE, QUERY，数据库中保存字典编码）
+    @Convert(converter = AuditDictionaryConverters.OperationType.class)
+    @Column(name = "operation_type", nullable = false)
     private String operationType;
 
-    // 操作对象类型（USER, ROLE等）
-    @Column(name = "object_type", nullable = false, length = 50)
+    // 操作对象类型（USER, ROLE等，数据库中保存字典编码）
+    @Convert(converter = AuditDictionaryConverters.ObjectType.class)
+    @Column(name = "object_type", nullable = false)
     private String objectType;
 
     // 操作对象ID
@@ -37,8 +41,9 @@ public class AdminOperationLog {
     @Column(name = "object_name", length = 100)
     private String objectName;
 
-    // 操作结果（SUCCESS, FAILURE）
-    @Column(name = "result", nullable = false, length = 20)
+    // 操作结果（SUCCESS, FAILURE，数据库中保存字典编码）
+    @Convert(converter = AuditDictionaryConverters.Result.class)
+    @Column(name = "result", nullable = false)
     private String result;
 
     // 操作时间
@@ -48,4 +53,12 @@ public class AdminOperationLog {
     // 操作IP地址
     @Column(name = "ip_address", length = 50)
     private String ipAddress;
+
+    // 合并记录代表的操作次数，未合并的记录为1
+    @Column(name = "occurrences")
+    private Integer occurrences = 1;
+
+    // 合并记录中最后一次操作的时间（第一次为operationTime），未合并的记录为null
+    @Column(name = "last_operation_time")
+    private LocalDateTime lastOperationTime;
 }
\ No newline at end of file
@@ -0,0 +1,62 @@
+package com.example.pim.entity;
+
+import com.example.pim.service.AuditDictionaryService;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import javax.persistence.AttributeConverter;
+
+/**
+ * 操作日志低基数列的JPA转换器：实体中是字符串，数据库中是字典编码
+ * 转换器由Spring创建并注入字典服务。
+ */
+public final class AuditDictionaryConverters {
+
+    private AuditDictionaryConverters() {
+    }
+
+    abstract static class DictionaryConverter implements AttributeConverter<String, Integer> {
+
+        private final String category;
+
+        @Autowired
+        private AuditDictionaryService dictionary;
+
+        DictionaryConverter(String category) {
+            this.category = category;
+        }
+
+        @Override
+        public Integer convertToDatabaseColumn(String attribute) {
+            return attribute == null ? null : dictionary.encode(category, attribute);
+        }
+
+        @Override
+        public String convertToEntityAttribute(Integer dbData) {
+            return dbData == null ? null : dictionary.decode(category, dbData);
+        }
+    }
+
+    public static class AdminUsername extends DictionaryConverter {
+        public AdminUsername() {
+            super(AuditDictionaryService.ADMIN_USERNAME);
+        }
+    }
+
+    public static class OperationType extends DictionaryConverter {
+        public OperationType() {
+            super(AuditDictionaryService.OPERATION_TYPE);
+        }
+    }
+
+    public static class ObjectType extends DictionaryConverter {
+        public ObjectType() {
+            super(AuditDictionaryService.OBJECT_TYPE);
+        }
+    }
+
+    public static class Result extends DictionaryConverter {
+        public Result() {
+            super(AuditDictionaryService.RESULT);
+        }
+    }
+}
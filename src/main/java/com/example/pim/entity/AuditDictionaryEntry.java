@@ -0,0 +1,29 @@
+package com.example.pim.entity;
+
+import lombok.Data;
+import javax.persistence.*;
+
+@Data
+@Entity
+@Table(name = "audit_dictionary", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_audit_dictionary_value", columnNames = {"category", "dict_value"}),
+        @UniqueConstraint(name = "uk_audit_dictionary_code", columnNames = {"category", "code"})
+})
+public class AuditDictionaryEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // 字典类别（adminUsername, operationType, objectType, result）
+    @Column(name = "category", nullable = false, length = 30)
+    private String category;
+
+    // 类别内的整数编码
+    @Column(name = "code", nullable = false)
+    private Integer code;
+
+    // 原始取值
+    @Column(name = "dict_value", nullable = false, length = 100)
+    private String value;
+}
@@ -0,0 +1,28 @@
+package com.example.pim.entity;
+
+import lombok.Data;
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+@Data
+@Entity
+@Table(name = "revoked_tokens")
+public class RevokedToken {
+
+    // 令牌ID（JWT的jti声明）
+    @Id
+    @Column(name = "token_id", length = 64)
+    private String tokenId;
+
+    // 令牌所属用户名
+    @Column(name = "username", length = 50)
+    private String username;
+
+    // 令牌原本的过期时间，过期后该记录即可清理
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    // 撤销时间
+    @Column(name = "revoked_at", nullable = false)
+    private LocalDateTime revokedAt = LocalDateTime.now();
+}
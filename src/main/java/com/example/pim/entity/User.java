@@ -1,12 +1,13 @@
 package com.example.pim.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "idx_users_search_key", columnList = "search_key"))
 public class User {
 
     @Id
@@ -61,6 +62,10 @@ public class User {
     @Column(name = "lock_time")
     private LocalDateTime lockTime;
 
+    // 安全版本号，禁用、锁定、修改密码时递增，使已签发的令牌失效
+    @Column(name = "security_version")
+    private Integer securityVersion = 0;
+
     // 邮箱验证状态
     @Column(name = "email_verified")
     private Boolean emailVerified = false;
@@ -73,6 +78,14 @@ public class User {
     @Column(name = "verification_token_expiry")
     private LocalDateTime verificationTokenExpiry;
 
+    // 用户名、姓名、邮箱小写后拼接的生成列，由数据库维护，只用于不区分大小写的关键字搜索；
+    // H2不支持表达式索引，用生成列上的索引代替
+    @JsonIgnore
+    @Column(name = "search_key", insertable = false, updatable = false,
+            columnDefinition = "VARCHAR(252) GENERATED ALWAYS AS (LOWER(username) || CHAR(1) || " +
+                    "COALESCE(LOWER(full_name), '') || CHAR(1) || LOWER(email))")
+    private String searchKey;
+
     @PreUpdate
     protected void onUpdate() {
         updatedAt = LocalDateTime.now();
@@ -0,0 +1,23 @@
+package com.example.pim.repository;
+
+import com.example.pim.entity.AdminOperationLog;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface AdminOperationLogRepositoryCustom {
+
+    // 按条件和排序取前limit条记录，不执行COUNT查询
+    List<AdminOperationLog> findTop(Specification<AdminOperationLog> spec, Sort sort, int limit);
+
+    // 按条件和排序跳过offset条后取limit条记录，不执行COUNT查询
+    List<AdminOperationLog> findTop(Specification<AdminOperationLog> spec, Sort sort, long offset, int limit);
+
+    // 统计满足条件的记录数，最多计数到limit
+    long countUpTo(Specification<AdminOperationLog> spec, int limit);
+
+    // 通过只进游标逐条读取满足条件的记录，每次从数据库取fetchSize条，读取过的实体不保留在持久化上下文中
+    void scroll(Specification<AdminOperationLog> spec, Sort sort, int fetchSize, Consumer<AdminOperationLog> consumer);
+}
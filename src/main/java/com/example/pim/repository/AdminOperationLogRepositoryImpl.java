@@ -0,0 +1,87 @@
+package com.example.pim.repository;
+
+import com.example.pim.entity.AdminOperationLog;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.query.Query;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.List;
+import java.util.function.Consumer;
+
+public class AdminOperationLogRepositoryImpl implements AdminOperationLogRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AdminOperationLog> findTop(Specification<AdminOperationLog> spec, Sort sort, int limit) {
+        return findTop(spec, sort, 0, limit);
+    }
+
+    @Override
+    public List<AdminOperationLog> findTop(Specification<AdminOperationLog> spec, Sort sort, long offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AdminOperationLog> query = cb.createQuery(AdminOperationLog.class);
+        Root<AdminOperationLog> root = query.from(AdminOperationLog.class);
+        applySpec(spec, root, query, cb);
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+        return entityManager.createQuery(query).setFirstResult((int) Math.min(offset, Integer.MAX_VALUE))
+                .setMaxResults(limit).getResultList();
+    }
+
+    @Override
+    public long countUpTo(Specification<AdminOperationLog> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<AdminOperationLog> root = query.from(AdminOperationLog.class);
+        applySpec(spec, root, query, cb);
+        // 只取ID并限制行数，代替在大表上执行完整的COUNT
+        query.select(root.get("id"));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList().size();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void scroll(Specification<AdminOperationLog> spec, Sort sort, int fetchSize,
+                       Consumer<AdminOperationLog> consumer) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<AdminOperationLog> query = cb.createQuery(AdminOperationLog.class);
+        Root<AdminOperationLog> root = query.from(AdminOperationLog.class);
+        applySpec(spec, root, query, cb);
+        query.select(root).orderBy(QueryUtils.toOrders(sort, root, cb));
+        Query<AdminOperationLog> hibernateQuery = entityManager.createQuery(query).unwrap(Query.class);
+        hibernateQuery.setFetchSize(fetchSize);
+        hibernateQuery.setReadOnly(true);
+        try (ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY)) {
+            int read = 0;
+            while (results.next()) {
+                consumer.accept((AdminOperationLog) results.get(0));
+                // 定期清空持久化上下文，内存占用不随读取的行数增长
+                if (++read % fetchSize == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        entityManager.clear();
+    }
+
+    private static void applySpec(Specification<AdminOperationLog> spec, Root<AdminOperationLog> root,
+                                  CriteriaQuery<?> query, CriteriaBuilder cb) {
+        if (spec == null) {
+            return;
+        }
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+    }
+}
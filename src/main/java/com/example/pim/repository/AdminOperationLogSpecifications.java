@@ -0,0 +1,103 @@
+package com.example.pim.repository;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.service.AuditDictionaryService;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Predicate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 操作日志的动态查询条件
+ * 只为实际传入的筛选条件生成谓词；用户名按前缀匹配，操作类型和对象类型按等值匹配，
+ * 以便使用(admin_username, operation_time)、(operation_type, operation_time)等复合索引。
+ * 这些列在数据库中保存字典编码：前缀匹配先在字典中展开为IN列表，字典中不存在的取值直接返回空结果。
+ */
+public final class AdminOperationLogSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private AdminOperationLogSpecifications() {
+    }
+
+    public static Specification<AdminOperationLog> filter(AuditDictionaryService dictionary, String adminUsername,
+                                                          String operationType, String objectType,
+                                                          LocalDateTime startTime, LocalDateTime endTime,
+                                                          Boolean success) {
+        return (root, query, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (hasText(adminUsername)) {
+                List<String> usernames = dictionary.valuesWithPrefix(AuditDictionaryService.ADMIN_USERNAME,
+                        adminUsername.trim());
+                if (usernames.isEmpty()) {
+                    return cb.disjunction();
+                }
+                predicates.add(root.get("adminUsername").in(usernames));
+            }
+            if (hasText(operationType)) {
+                if (dictionary.lookup(AuditDictionaryService.OPERATION_TYPE, operationType.trim()) == null) {
+                    return cb.disjunction();
+                }
+                predicates.add(cb.equal(root.get("operationType"), operationType.trim()));
+            }
+            if (hasText(objectType)) {
+                if (dictionary.lookup(AuditDictionaryService.OBJECT_TYPE, objectType.trim()) == null) {
+                    return cb.disjunction();
+                }
+                predicates.add(cb.equal(root.get("objectType"), objectType.trim()));
+            }
+            if (startTime != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("operationTime"), startTime));
+            }
+            if (endTime != null) {
+                predicates.add(cb.lessThanOrEqualTo(root.get("operationTime"), endTime));
+            }
+            if (success != null) {
+                String result = success ? "SUCCESS" : "FAILURE";
+                if (dictionary.lookup(AuditDictionaryService.RESULT, result) == null) {
+                    return cb.disjunction();
+                }
+                predicates.add(cb.equal(root.get("result"), result));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+
+    // 游标条件：(operationTime, id) < (cursorTime, cursorId)
+    // 额外的operationTime <= cursorTime条件使OR展开后的谓词仍能走(operation_time, id)索引的范围扫描
+    public static Specification<AdminOperationLog> before(LocalDateTime cursorTime, Long cursorId) {
+        if (cursorTime == null) {
+            return null;
+        }
+        long id = cursorId != null ? cursorId : Long.MAX_VALUE;
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("operationTime"), cursorTime),
+                cb.or(cb.lessThan(root.get("operationTime"), cursorTime),
+                        cb.and(cb.equal(root.get("operationTime"), cursorTime), cb.lessThan(root.get("id"), id))));
+    }
+
+    // 限定在一个分区的时间范围[startTime, endTime)内
+    public static Specification<AdminOperationLog> within(LocalDateTime startTime, LocalDateTime endTime) {
+        return (root, query, cb) -> cb.and(
+                cb.greaterThanOrEqualTo(root.get("operationTime"), startTime),
+                cb.lessThan(root.get("operationTime"), endTime));
+    }
+
+    private static boolean hasText(String value) {
+        return value != null && !value.trim().isEmpty();
+    }
+
+    public static String escapeLike(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                sb.append(LIKE_ESCAPE);
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
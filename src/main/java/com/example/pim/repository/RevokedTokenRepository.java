@@ -0,0 +1,25 @@
+package com.example.pim.repository;
+
+import com.example.pim.entity.RevokedToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+
+    // 获取所有尚未过期的已撤销令牌ID
+    @Query("SELECT r.tokenId FROM RevokedToken r WHERE r.expiresAt > ?1")
+    List<String> findActiveTokenIds(LocalDateTime now);
+
+    // 删除已过期的撤销记录
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= ?1")
+    int deleteExpired(LocalDateTime now);
+}
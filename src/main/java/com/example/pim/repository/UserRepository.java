@@ -1,9 +1,15 @@
 package com.example.pim.repository;
 
 import com.example.pim.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -18,4 +24,34 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     Optional<User> findByVerificationToken(String verificationToken);
+
+    // 按小写的用户名、姓名、邮箱模糊搜索，分页和总数都在数据库中计算；pattern需已转为小写并以!转义通配符
+    @Query(value = "SELECT u FROM User u WHERE u.searchKey LIKE ?1 ESCAPE '!'",
+            countQuery = "SELECT COUNT(u) FROM User u WHERE u.searchKey LIKE ?1 ESCAPE '!'")
+    Page<User> search(String pattern, Pageable pageable);
+
+    // 只查询安全版本号，用于令牌撤销检查
+    @Query("SELECT COALESCE(u.securityVersion, 0) FROM User u WHERE u.id = ?1")
+    Optional<Integer> findSecurityVersionById(Long id);
+
+    // 只更新密码哈希，用于登录成功后升级旧的哈希算法
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = ?2 WHERE u.id = ?1")
+    int updatePasswordHash(Long id, String password);
+
+    // 登录结果回写：失败次数、锁定状态和最后登录时间一次更新；不写安全版本号，避免覆盖并发的强制下线、禁用、改密
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.loginAttempts = ?2, u.accountLocked = ?3, u.lockTime = ?4, " +
+            "u.lastLogin = ?5 WHERE u.id = ?1")
+    int updateLoginState(Long id, Integer loginAttempts, Boolean accountLocked, LocalDateTime lockTime,
+                         LocalDateTime lastLogin);
+
+    // 登录失败次数达到阈值时锁定账户，安全版本号在数据库中递增，使已签发的令牌失效
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.loginAttempts = ?2, u.accountLocked = true, u.lockTime = ?3, " +
+            "u.securityVersion = COALESCE(u.securityVersion, 0) + 1 WHERE u.id = ?1")
+    int lockForLoginFailures(Long id, Integer loginAttempts, LocalDateTime lockTime);
 }
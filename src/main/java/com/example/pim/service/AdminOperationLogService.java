@@ -3,12 +3,14 @@ package com.example.pim.service;
 import com.example.pim.entity.AdminOperationLog;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.security.core.Authentication;
 
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public interface AdminOperationLogService {
 
@@ -37,6 +39,20 @@ public interface AdminOperationLogService {
                                      LocalDateTime startTime, LocalDateTime endTime, Boolean success,
                                      Pageable pageable);
     
+    // 按游标分页查询操作日志：返回(operationTime, id)严格早于游标的下一页，按时间和ID降序排列
+    Slice<AdminOperationLog> findLogsBefore(String adminUsername, String operationType, String objectType,
+                                            LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                                            LocalDateTime cursorTime, Long cursorId, int size);
+
+    // 估算满足条件的日志数量，超过上限时返回上限值
+    long estimateLogCount(String adminUsername, String operationType, String objectType,
+                          LocalDateTime startTime, LocalDateTime endTime, Boolean success);
+
+    // 按时间和ID升序逐条读取满足条件的日志，结果不在内存中保留，用于导出
+    void exportLogs(String adminUsername, String operationType, String objectType,
+                    LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                    Consumer<AdminOperationLog> consumer);
+
     // 获取日志统计信息
     Map<String, Long> getLogStatistics(String adminUsername, LocalDateTime startTime, LocalDateTime endTime);
     
@@ -0,0 +1,36 @@
+package com.example.pim.service;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.util.AuditArchive;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+public interface AuditArchiveService {
+
+    // 把分区表中的日志写入归档段，替换该分区此前的归档，返回归档的日志数量
+    long archivePartition(String partitionName, LocalDateTime startTime, LocalDateTime endTime);
+
+    // 已归档数据覆盖到的时间，早于该时间的日志只在归档中；没有归档时返回null
+    LocalDateTime getArchivedBefore();
+
+    // 归档中日志的最大ID，没有归档时返回0
+    long getMaxId();
+
+    // 删除所属分区在指定时间之前结束的归档段，返回被删除数据覆盖到的时间，没有删除时返回null
+    LocalDateTime deleteBefore(LocalDateTime time);
+
+    // 统计满足条件的归档日志数量，最多计数到limit
+    long count(AuditArchive.Query query, long limit);
+
+    // 按操作类型统计满足条件的归档日志数量
+    Map<String, Long> countByOperationType(AuditArchive.Query query);
+
+    // 按(操作时间, ID)顺序跳过offset条后取limit条满足条件的归档日志
+    List<AdminOperationLog> find(AuditArchive.Query query, boolean ascending, long offset, int limit);
+
+    // 按(操作时间, ID)顺序逐条访问满足条件的归档日志，visitor返回false时停止
+    void scan(AuditArchive.Query query, boolean ascending, Predicate<AdminOperationLog> visitor);
+}
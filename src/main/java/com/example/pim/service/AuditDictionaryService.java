@@ -0,0 +1,26 @@
+package com.example.pim.service;
+
+import java.util.List;
+
+public interface AuditDictionaryService {
+
+    String ADMIN_USERNAME = "adminUsername";
+    String OPERATION_TYPE = "operationType";
+    String OBJECT_TYPE = "objectType";
+    String RESULT = "result";
+
+    // 获取取值对应的编码，不存在时分配新编码并持久化
+    int encode(String category, String value);
+
+    // 查找取值对应的编码，不存在时返回null，不会分配新编码
+    Integer lookup(String category, String value);
+
+    // 将编码还原为取值
+    String decode(String category, int code);
+
+    // 类别下的所有取值
+    List<String> values(String category);
+
+    // 类别下以指定前缀开头的取值
+    List<String> valuesWithPrefix(String category, String prefix);
+}
@@ -0,0 +1,53 @@
+package com.example.pim.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Supplier;
+
+public interface AuditLogPartitionService {
+
+    // 返回保存该时间日志的分区表名，分区不存在时创建；早于保留期限或已归档且分区已删除时返回null
+    String partitionFor(LocalDateTime time);
+
+    // 从日志ID序列中一次取出count个新ID
+    long[] allocateIds(int count);
+
+    // 在写入屏障内执行日志写入：归档或删除分区时等待屏障内的写入提交，屏障内取得的分区在执行结束前不会被删除
+    <T> T withinWriteBarrier(Supplier<T> action);
+
+    // 与时间范围重叠的分区，按时间从新到旧排列，参数为null表示不限
+    List<Partition> findPartitions(LocalDateTime startTime, LocalDateTime endTime);
+
+    // 整表删除超过保留期限的分区，返回删除的分区数量
+    int dropExpiredPartitions();
+
+    // 把超过归档期限的分区写入冷归档后整表删除，返回归档的分区数量
+    int archivePartitions();
+
+    /**
+     * 操作日志分区，保存[startTime, endTime)范围内的日志
+     */
+    final class Partition {
+        private final String name;
+        private final LocalDateTime startTime;
+        private final LocalDateTime endTime;
+
+        public Partition(String name, LocalDateTime startTime, LocalDateTime endTime) {
+            this.name = name;
+            this.startTime = startTime;
+            this.endTime = endTime;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LocalDateTime getStartTime() {
+            return startTime;
+        }
+
+        public LocalDateTime getEndTime() {
+            return endTime;
+        }
+    }
+}
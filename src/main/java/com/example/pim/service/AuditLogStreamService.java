@@ -0,0 +1,13 @@
+package com.example.pim.service;
+
+import com.example.pim.entity.AdminOperationLog;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface AuditLogStreamService {
+
+    // 已持久化的日志推送给实时订阅者
+    void publish(AdminOperationLog log);
+
+    // 订阅实时日志，筛选条件为空时不筛选；lastEventId为客户端断线前收到的最后一个事件ID，从其后继续推送
+    SseEmitter subscribe(String adminUsername, String operationType, String objectType, String lastEventId);
+}
@@ -0,0 +1,12 @@
+package com.example.pim.service;
+
+import com.example.pim.entity.AdminOperationLog;
+
+public interface AuditLogWriter {
+
+    // 提交一条操作日志，由后台线程批量写入
+    void submit(AdminOperationLog log);
+
+    // 立即写入所有待写入的操作日志
+    void flush();
+}
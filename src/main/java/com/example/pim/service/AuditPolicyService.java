@@ -0,0 +1,21 @@
+package com.example.pim.service;
+
+import com.example.pim.entity.AdminOperationLog;
+
+import java.util.function.Consumer;
+
+public interface AuditPolicyService {
+
+    /**
+     * 审计策略：ALWAYS每次都记录，SAMPLED按比例抽样记录，COALESCED把时间窗口内相同的操作合并为一条记录
+     */
+    enum Mode {
+        ALWAYS, SAMPLED, COALESCED
+    }
+
+    // 按操作类型和对象类型对应的策略处理一条日志，需要记录时交给sink；合并的日志在窗口结束后以一条记录交给sink
+    void dispatch(AdminOperationLog log, Consumer<AdminOperationLog> sink);
+
+    // 立即输出所有尚未结束窗口的合并记录
+    void flush();
+}
@@ -0,0 +1,18 @@
+package com.example.pim.service;
+
+import com.example.pim.util.CaptchaUtil;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+public interface CaptchaService {
+
+    // 获取一个验证码（验证码文本和图片），优先从预生成的缓冲池中取出
+    CaptchaUtil.CaptchaResult nextCaptcha() throws IOException;
+
+    // 为验证码生成签名的挑战ID，客户端校验时回传，服务端无需保存会话
+    String issueChallenge(CaptchaUtil.CaptchaResult captcha, HttpServletRequest request);
+
+    // 校验验证码，每个挑战只能使用一次；未提供挑战ID时按配置回退到会话校验
+    boolean verifyChallenge(String challengeId, String answer, HttpServletRequest request);
+}
@@ -0,0 +1,12 @@
+package com.example.pim.service;
+
+import java.time.LocalDateTime;
+
+public interface LastLoginService {
+
+    // 记录用户最后登录时间，异步合并后批量写入数据库
+    void record(Long userId, LocalDateTime loginTime);
+
+    // 立即写入所有待写入的最后登录时间
+    void flush();
+}
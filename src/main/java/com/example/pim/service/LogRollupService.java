@@ -0,0 +1,19 @@
+package com.example.pim.service;
+
+import com.example.pim.entity.AdminOperationLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+public interface LogRollupService {
+
+    // 将新写入的日志累加到分钟和小时统计中，需与日志写入在同一事务内调用
+    void record(List<AdminOperationLog> logs);
+
+    // 按操作类型统计时间范围内的日志数量，参数为null表示不限
+    Map<String, Long> countByOperationType(String adminUsername, LocalDateTime startTime, LocalDateTime endTime);
+
+    // 删除早于指定时间的统计，随过期的日志分区一同清理
+    void purgeBefore(LocalDateTime time);
+}
@@ -0,0 +1,16 @@
+package com.example.pim.service;
+
+public interface LoginAttemptService {
+
+    // 记录用户登录失败，返回滑动窗口内的累计失败次数
+    int recordUserFailure(Long userId);
+
+    // 登录成功或账户锁定后清除用户的失败记录
+    void resetUser(Long userId);
+
+    // 记录来源IP的登录失败
+    void recordIpFailure(String ipAddress);
+
+    // 来源IP的剩余封禁时间（毫秒），未封禁返回0
+    long getIpBlockRemaining(String ipAddress);
+}
@@ -0,0 +1,7 @@
+package com.example.pim.service;
+
+public interface RateLimitService {
+
+    // 按策略和键（IP或用户名）尝试获取一个令牌，允许时返回0，否则返回需要等待的毫秒数
+    long tryAcquire(String policy, String key);
+}
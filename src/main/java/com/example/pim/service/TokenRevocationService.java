@@ -0,0 +1,15 @@
+package com.example.pim.service;
+
+import io.jsonwebtoken.Claims;
+
+public interface TokenRevocationService {
+
+    // 撤销单个令牌（退出登录）
+    void revoke(Claims claims);
+
+    // 判断令牌是否已被撤销
+    boolean isRevoked(Claims claims);
+
+    // 清理已过期的撤销记录并重建过滤器
+    void purgeExpired();
+}
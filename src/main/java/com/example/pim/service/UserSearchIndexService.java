@@ -0,0 +1,21 @@
+package com.example.pim.service;
+
+import com.example.pim.entity.User;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface UserSearchIndexService {
+
+    // 索引文本中用户名、姓名、邮箱之间的分隔符，与User.searchKey生成列一致
+    char SEARCH_KEY_SEPARATOR = '\u0001';
+
+    // 用户新增或用户名、姓名、邮箱变更后更新索引
+    void index(User user);
+
+    // 用户删除后从索引中移除
+    void remove(Long userId);
+
+    // 按关键字子串搜索用户，关键字需已去除首尾空白并转为小写，只查询当前页的用户；
+    // 索引尚未就绪、关键字过短或排序方式不支持时返回null
+    Page<User> search(String keyword, Pageable pageable);
+}
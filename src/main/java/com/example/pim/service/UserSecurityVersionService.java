@@ -0,0 +1,10 @@
+package com.example.pim.service;
+
+public interface UserSecurityVersionService {
+
+    // 检查令牌中的安全版本号是否仍与用户当前版本一致
+    boolean isCurrent(Long userId, int version);
+
+    // 用户安全相关信息变更（禁用、锁定、删除、修改密码）后使本地缓存失效
+    void invalidate(Long userId);
+}
@@ -13,6 +13,8 @@ public interface UserService {
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
     User authenticate(String username, String password);
+    // 登录：一次查询完成锁定检查、密码校验、失败计数和最后登录时间更新
+    User login(String username, String password, String ipAddress);
     User updateLastLoginTime(Long userId);
     void updatePassword(Long userId, String newPassword);
     List<User> getAllUsers();
@@ -28,6 +30,8 @@ public interface UserService {
     void lockAccount(Long userId);
     boolean isAccountLocked(String username);
     void unlockAccountIfExpired(Long userId);
+    // 强制下线：使该用户已签发的所有令牌失效
+    void forceLogout(Long userId);
     
     // 邮箱验证相关方法
     void createVerificationToken(User user, String token);
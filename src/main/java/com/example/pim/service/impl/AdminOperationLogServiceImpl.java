@@ -1,79 +1,150 @@
 package com.example.pim.service.impl;
 
 import com.example.pim.entity.AdminOperationLog;
-import com.example.pim.entity.User;
 import com.example.pim.repository.AdminOperationLogRepository;
+import com.example.pim.repository.AdminOperationLogSpecifications;
 import com.example.pim.service.AdminOperationLogService;
+import com.example.pim.service.AuditArchiveService;
+import com.example.pim.service.AuditDictionaryService;
+import com.example.pim.service.AuditLogPartitionService;
+import com.example.pim.service.AuditLogWriter;
+import com.example.pim.service.AuditPolicyService;
+import com.example.pim.service.LogRollupService;
+import com.example.pim.util.AuditArchive;
+import com.example.pim.util.AuthenticatedUser;
+import com.example.pim.util.ExpiringCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
 @Service
+@ConditionalOnProperty(name = "app.auditLog.storage", havingValue = "database", matchIfMissing = true)
 public class AdminOperationLogServiceImpl implements AdminOperationLogService {
 
+    private static final Sort SEEK_ORDER = Sort.by(Sort.Direction.DESC, "operationTime", "id");
+    private static final Sort EXPORT_ORDER = Sort.by(Sort.Direction.ASC, "operationTime", "id");
+
     private final AdminOperationLogRepository adminOperationLogRepository;
+    private final AuditLogWriter auditLogWriter;
+    private final LogRollupService logRollupService;
+    private final AuditDictionaryService auditDictionaryService;
+    private final AuditLogPartitionService auditLogPartitionService;
+    private final AuditArchiveService auditArchiveService;
+    private final AuditPolicyService auditPolicyService;
+    // 近似总数缓存：翻页时同一组筛选条件不必重复计数
+    private final ExpiringCache<String, Long> countCache = new ExpiringCache<>(1000);
+    private final int countLimit;
+    private final long countCacheTtlInMs;
+    private final int exportFetchSize;
 
     @Autowired
-    public AdminOperationLogServiceImpl(AdminOperationLogRepository adminOperationLogRepository) {
+    public AdminOperationLogServiceImpl(AdminOperationLogRepository adminOperationLogRepository,
+                                        AuditLogWriter auditLogWriter, LogRollupService logRollupService,
+                                        AuditDictionaryService auditDictionaryService,
+                                        AuditLogPartitionService auditLogPartitionService,
+                                        AuditArchiveService auditArchiveService,
+                                        AuditPolicyService auditPolicyService,
+                                        @Value("${app.auditLog.approximateCountLimit:10000}") int countLimit,
+                                        @Value("${app.auditLog.countCacheTtlInMs:10000}") long countCacheTtlInMs,
+                                        @Value("${app.auditLog.exportFetchSize:500}") int exportFetchSize) {
         this.adminOperationLogRepository = adminOperationLogRepository;
+        this.auditLogWriter = auditLogWriter;
+        this.logRollupService = logRollupService;
+        this.auditDictionaryService = auditDictionaryService;
+        this.auditLogPartitionService = auditLogPartitionService;
+        this.auditArchiveService = auditArchiveService;
+        this.auditPolicyService = auditPolicyService;
+        this.countLimit = countLimit;
+        this.countCacheTtlInMs = countCacheTtlInMs;
+        this.exportFetchSize = Math.max(1, exportFetchSize);
     }
 
     @Override
     public void logOperation(Authentication authentication, String operationType, String objectType,
                              Long objectId, String objectName, boolean isSuccess, HttpServletRequest request) {
+        AdminOperationLog log = buildLog(authentication, operationType, objectType, objectId, objectName,
+                isSuccess, request);
+        if (log != null) {
+            // 按审计策略抽样或合并后放入队列异步批量写入，不阻塞当前请求
+            auditPolicyService.dispatch(log, auditLogWriter::submit);
+        }
+    }
+
+    // 在日志写入器关闭之前输出尚未结束窗口的合并记录
+    @PreDestroy
+    public void flushPending() {
+        auditPolicyService.flush();
+    }
+
+    // 根据当前认证信息和请求构建操作日志，未认证时返回null
+    static AdminOperationLog buildLog(Authentication authentication, String operationType, String objectType,
+                                      Long objectId, String objectName, boolean isSuccess,
+                                      HttpServletRequest request) {
         // 如果authentication为null，尝试从SecurityContext获取
         if (authentication == null) {
             authentication = SecurityContextHolder.getContext().getAuthentication();
         }
 
-        if (authentication != null && authentication.isAuthenticated()) {
-            AdminOperationLog log = new AdminOperationLog();
-            
-            // 设置管理员信息
-            try {
-                // 假设Principal是User对象或包含用户名的对象
-                Object principal = authentication.getPrincipal();
-                if (principal instanceof User) {
-                    User adminUser = (User) principal;
-                    log.setAdminId(adminUser.getId());
-                    log.setAdminUsername(adminUser.getUsername());
-                } else {
-                    // 如果不是User对象，使用用户名
-                    log.setAdminId(null);
-                    log.setAdminUsername(authentication.getName());
-                }
-            } catch (Exception e) {
-                // 如果获取管理员信息失败，至少记录用户名
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return null;
+        }
+
+        AdminOperationLog log = new AdminOperationLog();
+
+
+        // 设置管理员信息
+        try {
+            // JWT过滤器和UserDetailsService构建的Principal都携带用户ID
+            Object principal = authentication.getPrincipal();
+            if (principal instanceof AuthenticatedUser) {
+                AuthenticatedUser adminUser = (AuthenticatedUser) principal;
+                log.setAdminId(adminUser.getUserId());
+                log.setAdminUsername(adminUser.getUsername());
+            } else {
+                // 其他类型的Principal没有用户ID，只记录用户名
                 log.setAdminId(null);
                 log.setAdminUsername(authentication.getName());
             }
+        } catch (Exception e) {
+            // 如果获取管理员信息失败，至少记录用户名
+            log.setAdminId(null);
+            log.setAdminUsername(authentication.getName());
+        }
 
-            // 设置操作信息
-            log.setOperationType(operationType);
-            log.setObjectType(objectType);
-            log.setObjectId(objectId);
-            log.setObjectName(objectName);
-            log.setResult(isSuccess ? "SUCCESS" : "FAILURE");
-            log.setOperationTime(LocalDateTime.now());
-
-            // 获取IP地址
-            if (request != null) {
-                String ip = request.getRemoteAddr();
-                if (ip != null && !ip.isEmpty()) {
-                    log.setIpAddress(ip);
-                }
-            }
+        // 设置操作信息
+        log.setOperationType(operationType);
+        log.setObjectType(objectType);
+        log.setObjectId(objectId);
+        log.setObjectName(objectName);
+        log.setResult(isSuccess ? "SUCCESS" : "FAILURE");
+        log.setOperationTime(LocalDateTime.now());
 
-            // 保存日志
-            adminOperationLogRepository.save(log);
+        // 获取IP地址
+        if (request != null) {
+            String ip = request.getRemoteAddr();
+            if (ip != null && !ip.isEmpty()) {
+                log.setIpAddress(ip);
+            }
         }
+        return log;
     }
 
     @Override
@@ -104,18 +175,122 @@ public class AdminOperationLogServiceImpl implements AdminOperationLogService {
     public Page<AdminOperationLog> findLogs(String adminUsername, String operationType, String objectType,
                                           LocalDateTime startTime, LocalDateTime endTime, Boolean success,
                                           Pageable pageable) {
-        // 处理null参数，确保查询条件正确传递
-        String usernameParam = adminUsername != null && !adminUsername.trim().isEmpty() ? adminUsername : "";
-        String typeParam = operationType != null && !operationType.trim().isEmpty() ? operationType : "";
-        String objTypeParam = objectType != null && !objectType.trim().isEmpty() ? objectType : "";
-        
-        // 如果开始时间为null，设置为很久以前的时间
-        LocalDateTime startParam = startTime != null ? startTime : LocalDateTime.now().minusYears(100);
-        // 如果结束时间为null，设置为现在时间
-        LocalDateTime endParam = endTime != null ? endTime : LocalDateTime.now().plusDays(1);
-        
-        return adminOperationLogRepository.findByAdminUsernameContainingAndOperationTypeContainingAndObjectTypeContainingAndOperationTimeBetweenAndSuccess(
-                usernameParam, typeParam, objTypeParam, startParam, endParam, success, pageable);
+        // 只为传入的条件生成谓词，未传入的条件不参与查询；时间条件由数据库下推到各分区，范围外的分区不会被扫描
+        Specification<AdminOperationLog> spec = AdminOperationLogSpecifications.filter(auditDictionaryService,
+                adminUsername, operationType, objectType, startTime, endTime, success);
+        if (!overlapsArchive(startTime)) {
+            return adminOperationLogRepository.findAll(spec, pageable);
+        }
+        AuditArchive.Query query = AuditArchive.Query.of(adminUsername, operationType, objectType,
+                startTime, endTime, success);
+        long archived = auditArchiveService.count(query, Long.MAX_VALUE);
+        if (archived == 0) {
+            return adminOperationLogRepository.findAll(spec, pageable);
+        }
+
+        // 归档的日志都早于数据库中的日志：按时间倒序时数据库中的日志在前，正序时归档在前
+        Sort.Order timeOrder = pageable.getSort().getOrderFor("operationTime");
+        long offset = pageable.getOffset();
+        int size = pageable.getPageSize();
+        List<AdminOperationLog> content = new ArrayList<>(size);
+        long hotTotal;
+        if (timeOrder == null || !timeOrder.isAscending()) {
+            Page<AdminOperationLog> hot = adminOperationLogRepository.findAll(spec, pageable);
+            hotTotal = hot.getTotalElements();
+            content.addAll(hot.getContent());
+            if (content.size() < size) {
+                content.addAll(auditArchiveService.find(query, false, Math.max(0, offset - hotTotal),
+                        size - content.size()));
+            }
+        } else {
+            hotTotal = adminOperationLogRepository.count(spec);
+            if (offset < archived) {
+                content.addAll(auditArchiveService.find(query, true, offset, size));
+            }
+            if (content.size() < size) {
+                content.addAll(adminOperationLogRepository.findTop(spec, pageable.getSort(),
+                        Math.max(0, offset - archived), size - content.size()));
+            }
+        }
+        return new PageImpl<>(content, pageable, hotTotal + archived);
+    }
+
+    @Override
+    public Slice<AdminOperationLog> findLogsBefore(String adminUsername, String operationType, String objectType,
+                                                   LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                                                   LocalDateTime cursorTime, Long cursorId, int size) {
+        Specification<AdminOperationLog> spec = AdminOperationLogSpecifications.filter(auditDictionaryService,
+                adminUsername, operationType, objectType, startTime, endTime, success)
+                .and(AdminOperationLogSpecifications.before(cursorTime, cursorId));
+        // 从游标所在的分区开始由新到旧逐个分区查询，取满一页（多取一条判断是否还有下一页）即停止
+        LocalDateTime upper = cursorTime != null && (endTime == null || cursorTime.isBefore(endTime))
+                ? cursorTime : endTime;
+        List<AdminOperationLog> rows = new ArrayList<>(size + 1);
+        for (AuditLogPartitionService.Partition partition : auditLogPartitionService.findPartitions(startTime, upper)) {
+            rows.addAll(adminOperationLogRepository.findTop(spec.and(AdminOperationLogSpecifications.within(
+                    partition.getStartTime(), partition.getEndTime())), SEEK_ORDER, size + 1 - rows.size()));
+            if (rows.size() > size) {
+                break;
+            }
+        }
+        // 数据库中的分区不足一页时继续读取更早的归档
+        if (rows.size() <= size && overlapsArchive(startTime)) {
+            rows.addAll(auditArchiveService.find(AuditArchive.Query.of(adminUsername, operationType, objectType,
+                    startTime, upper, success).before(cursorTime, cursorId), false, 0, size + 1 - rows.size()));
+        }
+        boolean hasNext = rows.size() > size;
+        List<AdminOperationLog> content = hasNext ? rows.subList(0, size) : rows;
+        return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    public long estimateLogCount(String adminUsername, String operationType, String objectType,
+                                 LocalDateTime startTime, LocalDateTime endTime, Boolean success) {
+        String key = adminUsername + "\u0000" + operationType + "\u0000" + objectType + "\u0000"
+                + startTime + "\u0000" + endTime + "\u0000" + success;
+        Long cached = countCache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // 最多计数到上限，避免在大表上执行完整的COUNT
+        long count = adminOperationLogRepository.countUpTo(AdminOperationLogSpecifications.filter(auditDictionaryService,
+                adminUsername, operationType, objectType, startTime, endTime, success), countLimit);
+        if (count < countLimit && overlapsArchive(startTime)) {
+            count += auditArchiveService.count(AuditArchive.Query.of(adminUsername, operationType, objectType,
+                    startTime, endTime, success), countLimit - count);
+        }
+        countCache.put(key, count, System.currentTimeMillis() + countCacheTtlInMs);
+        return count;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportLogs(String adminUsername, String operationType, String objectType,
+                           LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                           Consumer<AdminOperationLog> consumer) {
+        Specification<AdminOperationLog> spec = AdminOperationLogSpecifications.filter(auditDictionaryService,
+                adminUsername, operationType, objectType, startTime, endTime, success);
+        // 先按时间顺序读出归档，再由旧到新逐个分区读取，每个分区内按(operation_time, id)索引顺序返回，不需要对整个结果排序
+        if (overlapsArchive(startTime)) {
+            auditArchiveService.scan(AuditArchive.Query.of(adminUsername, operationType, objectType,
+                    startTime, endTime, success), true, log -> {
+                consumer.accept(log);
+                return true;
+            });
+        }
+        List<AuditLogPartitionService.Partition> partitions =
+                auditLogPartitionService.findPartitions(startTime, endTime);
+        for (int i = partitions.size() - 1; i >= 0; i--) {
+            AuditLogPartitionService.Partition partition = partitions.get(i);
+            adminOperationLogRepository.scroll(spec.and(AdminOperationLogSpecifications.within(
+                    partition.getStartTime(), partition.getEndTime())), EXPORT_ORDER, exportFetchSize, consumer);
+        }
+    }
+
+    // 查询范围是否可能包含已归档的日志
+    private boolean overlapsArchive(LocalDateTime startTime) {
+        LocalDateTime archivedBefore = auditArchiveService.getArchivedBefore();
+        return archivedBefore != null && (startTime == null || startTime.isBefore(archivedBefore));
     }
 
     @Override
@@ -129,14 +304,12 @@ public class AdminOperationLogServiceImpl implements AdminOperationLogService {
         statistics.put("QUERY", 0L);
         statistics.put("OTHER", 0L);
         
-        // 获取数据库统计结果
-        List<Map<String, Object>> dbStats = adminOperationLogRepository.getLogStatisticsByOperationType(
-                adminUsername, startTime, endTime);
+        // 从分钟和小时统计中汇总，只有范围首尾不足一分钟的部分查询原始日志
+        Map<String, Long> counts = logRollupService.countByOperationType(adminUsername, startTime, endTime);
         
-        // 将数据库结果转换为Map
-        for (Map<String, Object> stat : dbStats) {
-            String operationType = (String) stat.get("operationType");
-            Long count = ((Number) stat.get("count")).longValue();
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            String operationType = entry.getKey();
+            Long count = entry.getValue();
             
             // 如果是已知的操作类型，更新计数；否则计入OTHER
             if (statistics.containsKey(operationType)) {
@@ -151,13 +324,12 @@ public class AdminOperationLogServiceImpl implements AdminOperationLogService {
 
     @Override
     public List<String> getDistinctOperationTypes() {
-        List<String> types = adminOperationLogRepository.findDistinctOperationTypes();
-        return types != null ? types : Collections.emptyList();
+        // 直接从字典取值，不扫描日志表
+        return auditDictionaryService.values(AuditDictionaryService.OPERATION_TYPE);
     }
 
     @Override
     public List<String> getDistinctObjectTypes() {
-        List<String> types = adminOperationLogRepository.findDistinctObjectTypes();
-        return types != null ? types : Collections.emptyList();
+        return auditDictionaryService.values(AuditDictionaryService.OBJECT_TYPE);
     }
 }
\ No newline at end of file
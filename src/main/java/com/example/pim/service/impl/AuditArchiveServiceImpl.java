@@ -0,0 +1,145 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.service.AuditArchiveService;
+import com.example.pim.service.AuditDictionaryService;
+import com.example.pim.util.AuditArchive;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 操作日志冷归档
+ * 超过归档期限的分区按(operation_time, id)顺序以只进游标读出，还原字典编码后写入压缩的列式段文件，
+ * 之后分区表即可整表删除；归档段只读，与数据库中的日志一起参与查询。
+ */
+@Service
+@ConditionalOnProperty(name = "app.auditLog.storage", havingValue = "database", matchIfMissing = true)
+public class AuditArchiveServiceImpl implements AuditArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditArchiveServiceImpl.class);
+
+    private static final String SELECT_SQL = "SELECT id, admin_id, admin_username, operation_type, object_type, " +
+            "object_id, object_name, result, operation_time, ip_address, occurrences, last_operation_time " +
+            "FROM %s ORDER BY operation_time, id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditDictionaryService auditDictionaryService;
+    private final AuditArchive archive;
+    private final int fetchSize;
+
+    @Autowired
+    public AuditArchiveServiceImpl(JdbcTemplate jdbcTemplate, AuditDictionaryService auditDictionaryService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.auditLog.archive.dir:./data/audit-archive}") String dir,
+                                   @Value("${app.auditLog.archive.segmentRows:100000}") int segmentRows,
+                                   @Value("${app.auditLog.exportFetchSize:500}") int fetchSize) throws IOException {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditDictionaryService = auditDictionaryService;
+        this.archive = new AuditArchive(Paths.get(dir), segmentRows);
+        this.fetchSize = Math.max(1, fetchSize);
+        Gauge.builder("audit.archive.segments", archive, AuditArchive::getSegmentCount)
+                .description("Number of audit log archive segments")
+                .register(meterRegistry);
+        Gauge.builder("audit.archive.bytes", archive, AuditArchive::getDiskUsage)
+                .description("Disk usage of audit log archive segments")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long archivePartition(String partitionName, LocalDateTime startTime, LocalDateTime endTime) {
+        AuditArchive.Writer writer = archive.writer(partitionName, startTime, endTime);
+        long[] rows = new long[1];
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(String.format(SELECT_SQL, partitionName),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, rs -> {
+            AdminOperationLog log = new AdminOperationLog();
+            log.setId(rs.getLong(1));
+            log.setAdminId(rs.getLong(2));
+            log.setAdminUsername(auditDictionaryService.decode(AuditDictionaryService.ADMIN_USERNAME, rs.getInt(3)));
+            log.setOperationType(auditDictionaryService.decode(AuditDictionaryService.OPERATION_TYPE, rs.getInt(4)));
+            log.setObjectType(auditDictionaryService.decode(AuditDictionaryService.OBJECT_TYPE, rs.getInt(5)));
+            long objectId = rs.getLong(6);
+            log.setObjectId(rs.wasNull() ? null : objectId);
+            log.setObjectName(rs.getString(7));
+            log.setResult(auditDictionaryService.decode(AuditDictionaryService.RESULT, rs.getInt(8)));
+            log.setOperationTime(rs.getTimestamp(9).toLocalDateTime());
+            log.setIpAddress(rs.getString(10));
+            log.setOccurrences(rs.getInt(11));
+            Timestamp lastOperationTime = rs.getTimestamp(12);
+            log.setLastOperationTime(lastOperationTime != null ? lastOperationTime.toLocalDateTime() : null);
+            try {
+                writer.append(log);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        });
+        try {
+            int segments = writer.finish();
+            logger.info("Archived {} audit logs of {} into {} segments", rows[0], partitionName, segments);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return rows[0];
+    }
+
+    @Override
+    public LocalDateTime getArchivedBefore() {
+        return archive.getArchivedBefore();
+    }
+
+    @Override
+    public long getMaxId() {
+        return archive.getMaxId();
+    }
+
+    @Override
+    public LocalDateTime deleteBefore(LocalDateTime time) {
+        LocalDateTime deletedBefore = archive.deleteBefore(time);
+        if (deletedBefore != null) {
+            logger.info("Deleted audit log archive segments before {}", deletedBefore);
+        }
+        return deletedBefore;
+    }
+
+    @Override
+    public long count(AuditArchive.Query query, long limit) {
+        return archive.count(query, limit);
+    }
+
+    @Override
+    public Map<String, Long> countByOperationType(AuditArchive.Query query) {
+        return archive.countByOperationType(query);
+    }
+
+    @Override
+    public List<AdminOperationLog> find(AuditArchive.Query query, boolean ascending, long offset, int limit) {
+        return archive.find(query, ascending, offset, limit);
+    }
+
+    @Override
+    public void scan(AuditArchive.Query query, boolean ascending, Predicate<AdminOperationLog> visitor) {
+        archive.scan(query, ascending, visitor);
+    }
+}
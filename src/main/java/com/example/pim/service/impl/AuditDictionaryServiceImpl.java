@@ -0,0 +1,150 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.service.AuditDictionaryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 操作日志低基数列的字典
+ * 管理员用户名、操作类型、对象类型和操作结果在日志表中只保存整数编码，编码与取值的对应关系保存在audit_dictionary表，
+ * 并在内存中双向缓存；新取值在首次写入时分配编码，解码时遇到未知编码（可能由其他实例分配）重新加载一次。
+ * 字典在首次使用时加载，而不是在启动时，因为JPA转换器在建表之前就会创建本服务。
+ */
+@Service
+public class AuditDictionaryServiceImpl implements AuditDictionaryService {
+
+    private final JdbcTemplate jdbcTemplate;
+    // 重新加载时整体替换
+    private volatile Map<String, Category> categories = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @Autowired
+    public AuditDictionaryServiceImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public int encode(String category, String value) {
+        Integer code = lookup(category, value);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            Category dictionary = category(category);
+            code = dictionary.codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            int next = dictionary.values.length;
+            try {
+                jdbcTemplate.update("INSERT INTO audit_dictionary (category, code, dict_value) VALUES (?, ?, ?)",
+                        category, next, value);
+            } catch (DuplicateKeyException e) {
+                // 其他实例已写入同一取值或编码，重新加载后再查找
+                reload();
+                return encode(category, value);
+            }
+            dictionary.add(next, value);
+            return next;
+        }
+    }
+
+    @Override
+    public Integer lookup(String category, String value) {
+        return category(category).codes.get(value);
+    }
+
+    @Override
+    public String decode(String category, int code) {
+        if (code < 0) {
+            return null;
+        }
+        String value = valueOf(category(category), code);
+        if (value != null) {
+            return value;
+        }
+        synchronized (this) {
+            // 等待锁期间可能已被其他线程重新加载
+            value = valueOf(category(category), code);
+            if (value == null) {
+                reload();
+                value = valueOf(category(category), code);
+            }
+            return value;
+        }
+    }
+
+    private static String valueOf(Category dictionary, int code) {
+        String[] values = dictionary.values;
+        return code < values.length ? values[code] : null;
+    }
+
+    @Override
+    public List<String> values(String category) {
+        return category(category).sortedValues;
+    }
+
+    @Override
+    public List<String> valuesWithPrefix(String category, String prefix) {
+        List<String> matched = new ArrayList<>();
+        for (String value : category(category).sortedValues) {
+            if (value.startsWith(prefix)) {
+                matched.add(value);
+            }
+        }
+        return matched;
+    }
+
+    private Category category(String category) {
+        if (!loaded) {
+            load();
+        }
+        return categories.computeIfAbsent(category, c -> new Category());
+    }
+
+    private synchronized void load() {
+        if (!loaded) {
+            reload();
+            loaded = true;
+        }
+    }
+
+    private synchronized void reload() {
+        Map<String, Category> fresh = new ConcurrentHashMap<>();
+        jdbcTemplate.query("SELECT category, code, dict_value FROM audit_dictionary ORDER BY category, code", rs -> {
+            fresh.computeIfAbsent(rs.getString(1), c -> new Category()).add(rs.getInt(2), rs.getString(3));
+        });
+        // 整体替换，读取方不会看到清空后尚未填充的字典
+        categories = fresh;
+    }
+
+    /**
+     * 单个类别的双向映射，写入在外层加锁，读取无锁
+     */
+    private static final class Category {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private volatile String[] values = new String[0];
+        private volatile List<String> sortedValues = Collections.emptyList();
+
+        private void add(int code, String value) {
+            String[] grown = Arrays.copyOf(values, Math.max(values.length, code + 1));
+            grown[code] = value;
+            values = grown;
+            codes.put(value, code);
+
+            List<String> sorted = new ArrayList<>(sortedValues);
+            sorted.add(value);
+            Collections.sort(sorted);
+            sortedValues = Collections.unmodifiableList(sorted);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.service.AuditArchiveService;
+import com.example.pim.service.AuditLogPartitionService;
+import com.example.pim.service.LogRollupService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 操作日志按时间分区
+ * 日志按月（或按天）写入独立的分区表，admin_operation_logs 改为合并各分区的视图，原有查询不变；
+ * 带时间条件的查询由数据库把条件下推到各分区，范围之外的分区只做一次索引探测。
+ * 超过保留期限的分区先从视图中移除再整表删除，不执行大批量DELETE。
+ * 超过归档期限的分区先写入冷归档（见AuditArchiveServiceImpl），再同样从视图中移除并删除。
+ * 日志写入在写入屏障的读锁内完成；删除分区前取得写锁，归档后迟到的写入在写锁内重新归档，不会随分区一起删除。
+ */
+@Service
+@ConditionalOnProperty(name = "app.auditLog.storage", havingValue = "database", matchIfMissing = true)
+public class AuditLogPartitionServiceImpl implements AuditLogPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogPartitionServiceImpl.class);
+
+    private static final String VIEW_NAME = "admin_operation_logs";
+    private static final String PARTITION_PREFIX = "admin_operation_logs_p";
+    private static final String SEQUENCE_NAME = "admin_operation_logs_seq";
+    private static final String COLUMNS = "id, admin_id, admin_username, operation_type, object_type, object_id, " +
+            "object_name, result, operation_time, ip_address, occurrences, last_operation_time";
+    // 与AdminOperationLog实体的列保持一致，四个低基数列保存字典编码
+    private static final String CREATE_PARTITION_SQL = "CREATE TABLE IF NOT EXISTS %s (" +
+            "id BIGINT DEFAULT NEXT VALUE FOR " + SEQUENCE_NAME + " PRIMARY KEY, " +
+            "admin_id BIGINT NOT NULL, admin_username INTEGER NOT NULL, operation_type INTEGER NOT NULL, " +
+            "object_type INTEGER NOT NULL, object_id BIGINT, object_name VARCHAR(100), result INTEGER NOT NULL, " +
+            "operation_time TIMESTAMP NOT NULL, ip_address VARCHAR(50), " +
+            "occurrences INTEGER DEFAULT 1 NOT NULL, last_operation_time TIMESTAMP, " +
+            "CHECK (operation_time >= TIMESTAMP '%s' AND operation_time < TIMESTAMP '%s'))";
+
+    private static final DateTimeFormatter MONTH_SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DAY_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter TIMESTAMP_LITERAL = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    public enum Granularity {
+        DAY, MONTH
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LogRollupService logRollupService;
+    private final AuditArchiveService auditArchiveService;
+    private final Granularity granularity;
+    private final int retentionInDays;
+    private final int archiveAfterDays;
+    // 分区起始时间 -> 分区
+    private final ConcurrentSkipListMap<LocalDateTime, Partition> partitions = new ConcurrentSkipListMap<>();
+    // 加锁顺序：maintenanceLock -> writeBarrier -> this
+    private final ReadWriteLock writeBarrier = new ReentrantReadWriteLock();
+    private final Object maintenanceLock = new Object();
+    // 原日志表迁移完成前不能创建同名视图
+    private volatile boolean viewReady;
+
+    // 注入EntityManagerFactory保证Hibernate建表完成后再接管日志表
+    @Autowired
+    public AuditLogPartitionServiceImpl(JdbcTemplate jdbcTemplate, LogRollupService logRollupService,
+                                        AuditArchiveService auditArchiveService,
+                                        EntityManagerFactory entityManagerFactory,
+                                        @Value("${app.auditLog.partition.granularity:MONTH}") Granularity granularity,
+                                        @Value("${app.auditLog.partition.retentionInDays:365}") int retentionInDays,
+                                        @Value("${app.auditLog.archive.afterDays:90}") int archiveAfterDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.logRollupService = logRollupService;
+        this.auditArchiveService = auditArchiveService;
+        this.granularity = granularity;
+        this.retentionInDays = retentionInDays;
+        this.archiveAfterDays = archiveAfterDays;
+    }
+
+    @PostConstruct
+    public void init() {
+        synchronized (this) {
+            loadPartitions();
+            migrateLegacyTable();
+            // 提前建好当前和下一个分区，避免在写入路径上执行DDL
+            LocalDateTime now = LocalDateTime.now();
+            partitionFor(now);
+            partitionFor(now.plusDays(1));
+            viewReady = true;
+            rebuildView();
+        }
+        // 上次归档中途停止时，已归档范围内可能还留有分区，重新归档后删除
+        archivePartitions();
+    }
+
+    @Override
+    public String partitionFor(LocalDateTime time) {
+        Partition partition = covering(time);
+        if (partition == null) {
+            if (isExpired(time) || isArchived(time)) {
+                return null;
+            }
+            partition = createPartition(time);
+        }
+        return partition.getName();
+    }
+
+    @Override
+    public long[] allocateIds(int count) {
+        if (count <= 0) {
+            return new long[0];
+        }
+        // 一次查询取出一批序列值
+        return jdbcTemplate.queryForList("SELECT NEXT VALUE FOR " + SEQUENCE_NAME + " FROM SYSTEM_RANGE(1, ?)",
+                Long.class, count).stream().mapToLong(Long::longValue).toArray();
+    }
+
+    @Override
+    public <T> T withinWriteBarrier(Supplier<T> action) {
+        writeBarrier.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            writeBarrier.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Partition> findPartitions(LocalDateTime startTime, LocalDateTime endTime) {
+        List<Partition> result = new ArrayList<>();
+        for (Partition partition : partitions.descendingMap().values()) {
+            if (endTime != null && partition.getStartTime().isAfter(endTime)) {
+                continue;
+            }
+            if (startTime != null && !partition.getEndTime().isAfter(startTime)) {
+                break;
+            }
+            result.add(partition);
+        }
+        return result;
+    }
+
+    // 每天预建下一个分区，清理过期分区并归档旧分区
+    @Scheduled(cron = "${app.auditLog.partition.maintenanceCron:0 10 0 * * *}")
+    public void maintainPartitions() {
+        try {
+            partitionFor(LocalDateTime.now().plusDays(1));
+            dropExpiredPartitions();
+            archivePartitions();
+        } catch (Exception e) {
+            logger.error("Failed to maintain audit log partitions", e);
+        }
+    }
+
+    @Override
+    public int dropExpiredPartitions() {
+        if (retentionInDays <= 0) {
+            return 0;
+        }
+        synchronized (maintenanceLock) {
+            LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionInDays);
+            List<Partition> expired = new ArrayList<>();
+            for (Partition partition : partitions.values()) {
+                if (partition.getEndTime().isAfter(cutoff)) {
+                    break;
+                }
+                expired.add(partition);
+            }
+            LocalDateTime droppedBefore = auditArchiveService.deleteBefore(cutoff);
+            if (!expired.isEmpty()) {
+                removePartitions(expired);
+                LocalDateTime end = expired.get(expired.size() - 1).getEndTime();
+                if (droppedBefore == null || end.isAfter(droppedBefore)) {
+                    droppedBefore = end;
+                }
+                logger.info("Dropped {} audit log partitions before {}", expired.size(), end);
+            }
+            if (droppedBefore != null) {
+                logRollupService.purgeBefore(droppedBefore);
+            }
+            return expired.size();
+        }
+    }
+
+    @Override
+    public int archivePartitions() {
+        synchronized (maintenanceLock) {
+            LocalDateTime cutoff = archiveAfterDays > 0 ? LocalDateTime.now().minusDays(archiveAfterDays) : null;
+            LocalDateTime archivedBefore = auditArchiveService.getArchivedBefore();
+            if (archivedBefore != null && (cutoff == null || archivedBefore.isAfter(cutoff))) {
+                cutoff = archivedBefore;
+            }
+            if (cutoff == null) {
+                return 0;
+            }
+            // 归档时不阻塞写入，记录每个分区归档的行数
+            Map<Partition, Long> archived = new LinkedHashMap<>();
+            for (Partition partition : partitions.values()) {
+                if (partition.getEndTime().isAfter(cutoff)) {
+                    break;
+                }
+                archived.put(partition, auditArchiveService.archivePartition(partition.getName(),
+                        partition.getStartTime(), partition.getEndTime()));
+            }
+            if (archived.isEmpty()) {
+                return 0;
+            }
+            writeBarrier.writeLock().lock();
+            try {
+                // 分区只会插入日志：行数变化说明归档后有迟到的写入或溢出补写，此时已没有进行中的写入，重新归档
+                archived.forEach((partition, rows) -> {
+                    Long current = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + partition.getName(),
+                            Long.class);
+                    if (current != null && current != rows.longValue()) {
+                        logger.info("Re-archiving {} after {} late audit logs", partition.getName(), current - rows);
+                        auditArchiveService.archivePartition(partition.getName(), partition.getStartTime(),
+                                partition.getEndTime());
+                    }
+                });
+                // 分钟和小时统计不随归档删除，统计查询仍然可以直接使用
+                removePartitions(new ArrayList<>(archived.keySet()));
+            } finally {
+                writeBarrier.writeLock().unlock();
+            }
+            List<Partition> removed = new ArrayList<>(archived.keySet());
+            logger.info("Archived {} audit log partitions before {}", removed.size(),
+                    removed.get(removed.size() - 1).getEndTime());
+            return removed.size();
+        }
+    }
+
+    private void removePartitions(List<Partition> removed) {
+        writeBarrier.writeLock().lock();
+        try {
+            synchronized (this) {
+                // 先从视图中移除，查询不会再读到正在删除的分区
+                for (Partition partition : removed) {
+                    partitions.remove(partition.getStartTime());
+                }
+                rebuildView();
+                for (Partition partition : removed) {
+                    jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition.getName());
+                }
+            }
+        } finally {
+            writeBarrier.writeLock().unlock();
+        }
+    }
+
+    private Partition covering(LocalDateTime time) {
+        Map.Entry<LocalDateTime, Partition> entry = partitions.floorEntry(time);
+        return entry != null && time.isBefore(entry.getValue().getEndTime()) ? entry.getValue() : null;
+    }
+
+    private boolean isExpired(LocalDateTime time) {
+        return retentionInDays > 0 && time.isBefore(LocalDateTime.now().minusDays(retentionInDays));
+    }
+
+    // 归档段不可修改，已归档范围内不再创建分区
+    private boolean isArchived(LocalDateTime time) {
+        LocalDateTime archivedBefore = auditArchiveService.getArchivedBefore();
+        return archivedBefore != null && time.isBefore(archivedBefore);
+    }
+
+    private synchronized Partition createPartition(LocalDateTime time) {
+        Partition existing = covering(time);
+        if (existing != null) {
+            return existing;
+        }
+        Partition partition = newPartition(time);
+        String name = partition.getName();
+        jdbcTemplate.execute(String.format(CREATE_PARTITION_SQL, name,
+                partition.getStartTime().format(TIMESTAMP_LITERAL), partition.getEndTime().format(TIMESTAMP_LITERAL)));
+        // 与原日志表相同的索引：游标分页、按管理员、操作类型、对象类型筛选后按时间排序
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + "_time_id ON " + name + " (operation_time, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + "_admin_time ON " + name +
+                " (admin_username, operation_time)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + "_type_time ON " + name +
+                " (operation_type, operation_time)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + name + "_object_time ON " + name +
+                " (object_type, operation_time)");
+        partitions.put(partition.getStartTime(), partition);
+        rebuildView();
+        return partition;
+    }
+
+    private Partition newPartition(LocalDateTime time) {
+        LocalDateTime day = time.truncatedTo(ChronoUnit.DAYS);
+        if (granularity == Granularity.MONTH) {
+            LocalDateTime start = day.withDayOfMonth(1);
+            LocalDateTime end = start.plusMonths(1);
+            // 切换过分区粒度时当月可能已有按天的分区，此时继续按天分区，避免分区范围重叠
+            Map.Entry<LocalDateTime, Partition> before = partitions.lowerEntry(end);
+            if (before == null || !before.getValue().getEndTime().isAfter(start)) {
+                return new Partition(PARTITION_PREFIX + start.format(MONTH_SUFFIX), start, end);
+            }
+        }
+        return new Partition(PARTITION_PREFIX + day.format(DAY_SUFFIX), day, day.plusDays(1));
+    }
+
+    private void loadPartitions() {
+        List<String> names = jdbcTemplate.queryForList("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+                        "WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND LOWER(TABLE_NAME) LIKE ?", String.class,
+                PARTITION_PREFIX + "%");
+        for (String name : names) {
+            Partition partition = parsePartition(name.toLowerCase(Locale.ROOT));
+            if (partition != null) {
+                partitions.put(partition.getStartTime(), partition);
+            }
+        }
+    }
+
+    private static Partition parsePartition(String name) {
+        String suffix = name.substring(PARTITION_PREFIX.length());
+        try {
+            if (suffix.length() == 6) {
+                LocalDateTime start = YearMonth.parse(suffix, MONTH_SUFFIX).atDay(1).atStartOfDay();
+                return new Partition(name, start, start.plusMonths(1));
+            }
+            if (suffix.length() == 8) {
+                LocalDateTime start = LocalDate.parse(suffix, DAY_SUFFIX).atStartOfDay();
+                return new Partition(name, start, start.plusDays(1));
+            }
+        } catch (DateTimeParseException e) {
+            logger.warn("Ignoring table {} with unexpected partition suffix", name);
+        }
+        return null;
+    }
+
+    // Hibernate按实体创建的是普通表：把已有日志按时间搬到各分区后删除原表，由视图代替
+    private void migrateLegacyTable() {
+        List<String> types = jdbcTemplate.queryForList("SELECT TABLE_TYPE FROM INFORMATION_SCHEMA.TABLES " +
+                "WHERE TABLE_SCHEMA = CURRENT_SCHEMA AND LOWER(TABLE_NAME) = ?", String.class, VIEW_NAME);
+        boolean legacyTable = !types.isEmpty() && !"VIEW".equalsIgnoreCase(types.get(0));
+
+        // 新ID须大于原表、已有分区和冷归档中的所有ID：内存数据库重启后分区为空，归档仍在磁盘上
+        Long hotMaxId = types.isEmpty() ? null
+                : jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + VIEW_NAME, Long.class);
+        long next = Math.max(hotMaxId != null ? hotMaxId : 0, auditArchiveService.getMaxId()) + 1;
+        jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE_NAME + " START WITH " + next);
+        Long current = jdbcTemplate.queryForObject("SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES " +
+                "WHERE SEQUENCE_SCHEMA = CURRENT_SCHEMA AND LOWER(SEQUENCE_NAME) = ?", Long.class, SEQUENCE_NAME);
+        if (current != null && current < next) {
+            jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE_NAME + " RESTART WITH " + next);
+        }
+        if (!legacyTable) {
+            return;
+        }
+
+        Map<String, Object> range = jdbcTemplate.queryForMap("SELECT MIN(operation_time) AS min_time, " +
+                "MAX(operation_time) AS max_time FROM " + VIEW_NAME);
+        if (range.get("min_time") != null) {
+            LocalDateTime max = ((Timestamp) range.get("max_time")).toLocalDateTime();
+            LocalDateTime time = ((Timestamp) range.get("min_time")).toLocalDateTime();
+            while (!time.isAfter(max)) {
+                Partition partition = covering(time);
+                if (partition == null) {
+                    partition = createPartition(time);
+                }
+                // 原表中次数列由Hibernate新增，已有的行为null
+                jdbcTemplate.update("INSERT INTO " + partition.getName() + " (" + COLUMNS + ") SELECT " +
+                                COLUMNS.replace("occurrences", "COALESCE(occurrences, 1)") +
+                                " FROM " + VIEW_NAME + " WHERE operation_time >= ? AND operation_time < ?",
+                        partition.getStartTime(), partition.getEndTime());
+                time = partition.getEndTime();
+            }
+        }
+        jdbcTemplate.execute("DROP TABLE " + VIEW_NAME);
+        logger.info("Migrated table {} into {} partitions", VIEW_NAME, partitions.size());
+    }
+
+    private void rebuildView() {
+        if (!viewReady || partitions.isEmpty()) {
+            return;
+        }
+        StringJoiner sql = new StringJoiner(" UNION ALL ", "CREATE OR REPLACE VIEW " + VIEW_NAME + " AS ", "");
+        for (Partition partition : partitions.values()) {
+            sql.add("SELECT " + COLUMNS + " FROM " + partition.getName());
+        }
+        jdbcTemplate.execute(sql.toString());
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.service.AuditLogStreamService;
+import com.example.pim.util.AuditEventRing;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 操作日志实时推送（SSE）
+ * 已持久化的日志写入环形缓冲区，每个订阅者只保存自己在缓冲区中的读取位置，由分发线程在有新事件时
+ * 把订阅者交给发送线程池，按筛选条件推送；同一订阅者同时只有一个发送任务。
+ * 发送线程池在需要时扩充到订阅者上限，写出阻塞的客户端最多占用一个线程，不会拖住其他订阅者；
+ * 一次发送超过 writeTimeoutInMs 仍未完成的订阅者按已断开处理。
+ * 连接结束（完成、超时或出错）时订阅者被标记为已关闭，之后不再向其写出。
+ * 订阅者落后超过 maxBacklog 条时跳过最早的部分并推送 dropped 事件，积压不会超过该上限。
+ */
+@Service
+public class AuditLogStreamServiceImpl implements AuditLogStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditLogStreamServiceImpl.class);
+
+    // 每次发送任务最多推送的事件数，保证各订阅者轮流发送
+    private static final int SEND_BATCH = 100;
+
+    private final AuditEventRing ring;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService senderPool;
+    private final int maxBacklog;
+    private final int maxSubscribers;
+    private final long heartbeatIntervalInMs;
+    private final long timeoutInMs;
+    private final long writeTimeoutInMs;
+    private final Counter droppedCounter;
+
+    private volatile boolean running;
+    private Thread dispatcherThread;
+
+    @Autowired
+    public AuditLogStreamServiceImpl(MeterRegistry meterRegistry,
+                                     @Value("${app.auditLog.stream.bufferSize:8192}") int bufferSize,
+                                     @Value("${app.auditLog.stream.maxBacklog:1000}") int maxBacklog,
+                                     @Value("${app.auditLog.stream.maxSubscribers:100}") int maxSubscribers,
+                                     @Value("${app.auditLog.stream.senderThreads:4}") int senderThreads,
+                                     @Value("${app.auditLog.stream.heartbeatIntervalInMs:15000}")
+                                             long heartbeatIntervalInMs,
+                                     @Value("${app.auditLog.stream.timeoutInMs:1800000}") long timeoutInMs,
+                                     @Value("${app.auditLog.stream.writeTimeoutInMs:30000}") long writeTimeoutInMs) {
+        this.ring = new AuditEventRing(bufferSize);
+        // 积压上限不超过缓冲区容量
+        this.maxBacklog = Math.max(1, Math.min(maxBacklog, ring.getCapacity()));
+        this.maxSubscribers = maxSubscribers;
+        this.heartbeatIntervalInMs = Math.max(1000, heartbeatIntervalInMs);
+        this.timeoutInMs = timeoutInMs;
+        this.writeTimeoutInMs = Math.max(1000, writeTimeoutInMs);
+        AtomicInteger threadNumber = new AtomicInteger();
+        // 常驻senderThreads个线程，不排队：线程都在发送时新建线程，每个订阅者同时最多一个发送任务
+        int coreThreads = Math.max(1, senderThreads);
+        this.senderPool = new ThreadPoolExecutor(coreThreads, Math.max(coreThreads, maxSubscribers),
+                60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread thread = new Thread(r, "audit-log-stream-sender-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("audit.log.stream.subscribers", subscriberCount, AtomicInteger::get)
+                .description("实时日志订阅者数量")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("audit.log.stream.dropped")
+                .description("因订阅者积压过多而跳过的日志事件数量")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "audit-log-stream");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+    }
+
+    @Override
+    public void publish(AdminOperationLog log) {
+        ring.publish(log);
+        if (!subscribers.isEmpty()) {
+            LockSupport.unpark(dispatcherThread);
+        }
+    }
+
+    @Override
+    public SseEmitter subscribe(String adminUsername, String operationType, String objectType,
+                                String lastEventId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("实时日志订阅数已达上限");
+        }
+        SseEmitter emitter = new SseEmitter(timeoutInMs);
+        Subscriber subscriber = new Subscriber(emitter, trimToNull(adminUsername), trimToNull(operationType),
+                trimToNull(objectType), resumeFrom(lastEventId));
+        emitter.onCompletion(() -> close(subscriber));
+        emitter.onTimeout(() -> close(subscriber));
+        emitter.onError(e -> close(subscriber));
+        subscribers.add(subscriber);
+        // 立即补发断线期间的事件
+        LockSupport.unpark(dispatcherThread);
+        return emitter;
+    }
+
+    // 事件ID是日志ID，应用重启后不会重复：从缓冲区中ID大于客户端最后收到的ID的日志继续；
+    // 没有或无法识别时只推送新事件
+    private long resumeFrom(String lastEventId) {
+        if (lastEventId == null || lastEventId.trim().isEmpty()) {
+            return ring.getLastSequence();
+        }
+        try {
+            return ring.sequenceAfterLogId(Long.parseLong(lastEventId.trim()));
+        } catch (NumberFormatException e) {
+            return ring.getLastSequence();
+        }
+    }
+
+    // 异步请求已结束，再写出会访问容器已回收的请求
+    private void close(Subscriber subscriber) {
+        subscriber.closed = true;
+        remove(subscriber);
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+
+    private void dispatchLoop() {
+        long lastHeartbeat = System.currentTimeMillis();
+        while (running) {
+            // 有新事件或新订阅者时被唤醒，否则等到下一次心跳
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(heartbeatIntervalInMs));
+            long now = System.currentTimeMillis();
+            boolean heartbeat = now - lastHeartbeat >= heartbeatIntervalInMs;
+            if (heartbeat) {
+                lastHeartbeat = now;
+            }
+            long lastSequence = ring.getLastSequence();
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.sending.get() && now - subscriber.sendStartedAt > writeTimeoutInMs) {
+                    // 客户端长时间不读取，写出一直阻塞；发送线程在写出超时或失败后退出
+                    logger.debug("Audit log stream subscriber stalled for {} ms, closing",
+                            now - subscriber.sendStartedAt);
+                    close(subscriber);
+                    continue;
+                }
+                if ((heartbeat || subscriber.cursor < lastSequence) && subscriber.sending.compareAndSet(false, true)) {
+                    subscriber.sendStartedAt = now;
+                    try {
+                        senderPool.execute(() -> send(subscriber, heartbeat));
+                    } catch (RejectedExecutionException e) {
+                        subscriber.sending.set(false);
+                    }
+                }
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber, boolean heartbeat) {
+        try {
+            if (subscriber.closed) {
+                return;
+            }
+            int[] count = {0};
+            long lastSequence = ring.getLastSequence();
+            if (lastSequence - subscriber.cursor > maxBacklog) {
+                sendDropped(subscriber, lastSequence - maxBacklog - subscriber.cursor);
+                subscriber.cursor = lastSequence - maxBacklog;
+                count[0]++;
+            }
+            long[] expected = {subscriber.cursor + 1};
+            subscriber.cursor = ring.read(subscriber.cursor, SEND_BATCH, event -> {
+                if (event.getSequence() > expected[0]) {
+                    // 读取期间缓冲区已被覆盖
+                    sendDropped(subscriber, event.getSequence() - expected[0]);
+                    count[0]++;
+                }
+                expected[0] = event.getSequence() + 1;
+                if (subscriber.matches(event.getLog())) {
+                    sendEvent(subscriber, SseEmitter.event()
+                            .id(String.valueOf(event.getLog().getId()))
+                            .name("log")
+                            .data(event.getLog(), MediaType.APPLICATION_JSON));
+                    count[0]++;
+                }
+            });
+            if (heartbeat && count[0] == 0) {
+                // 心跳用于及时发现已断开的连接
+                sendEvent(subscriber, SseEmitter.event().comment("keepalive"));
+            }
+        } catch (UncheckedIOException | IllegalStateException e) {
+            // 客户端已断开或连接已结束；写出失败时容器会自行结束异步请求，这里不再调用complete
+            logger.debug("Audit log stream subscriber disconnected: {}", e.getMessage());
+            remove(subscriber);
+        } finally {
+            subscriber.sending.set(false);
+        }
+        if (subscriber.cursor < ring.getLastSequence() && subscribers.contains(subscriber)) {
+            // 本次未发送完，交给分发线程安排下一轮
+            LockSupport.unpark(dispatcherThread);
+        }
+    }
+
+    private void sendDropped(Subscriber subscriber, long dropped) {
+        droppedCounter.increment(dropped);
+        sendEvent(subscriber, SseEmitter.event()
+                .name("dropped")
+                .data(Collections.singletonMap("dropped", dropped), MediaType.APPLICATION_JSON));
+    }
+
+    private static void sendEvent(Subscriber subscriber, SseEmitter.SseEventBuilder event) {
+        if (subscriber.closed) {
+            throw new IllegalStateException("订阅已结束");
+        }
+        try {
+            subscriber.emitter.send(event);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(dispatcherThread);
+        senderPool.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+        subscriberCount.set(0);
+    }
+
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final String adminUsername;
+        private final String operationType;
+        private final String objectType;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        // 连接已结束，不能再写出
+        private volatile boolean closed;
+        // 当前发送任务的开始时间，用于发现写出阻塞的客户端
+        private volatile long sendStartedAt;
+        // 已推送或已跳过的最后一个事件序号，只由持有sending标记的发送线程修改
+        private volatile long cursor;
+
+        private Subscriber(SseEmitter emitter, String adminUsername, String operationType, String objectType,
+                           long cursor) {
+            this.emitter = emitter;
+            this.adminUsername = adminUsername;
+            this.operationType = operationType;
+            this.objectType = objectType;
+            this.cursor = cursor;
+        }
+
+        // 与日志查询保持一致：用户名前缀匹配，操作类型和对象类型等值匹配
+        private boolean matches(AdminOperationLog log) {
+            return (adminUsername == null
+                    || log.getAdminUsername() != null && log.getAdminUsername().startsWith(adminUsername))
+                    && (operationType == null || operationType.equals(log.getOperationType()))
+                    && (objectType == null || objectType.equals(log.getObjectType()));
+        }
+    }
+}
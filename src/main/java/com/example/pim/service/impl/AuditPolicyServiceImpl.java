@@ -0,0 +1,226 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.config.AuditPolicyProperties;
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.service.AuditPolicyService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+/**
+ * 按操作类型和对象类型选择审计策略
+ * 抽样模式按比例丢弃成功的操作，失败的操作始终记录；合并模式把窗口内管理员、操作、对象和结果都相同的日志合并为一条，
+ * 记录次数以及第一次和最后一次的时间，窗口结束时输出。CREATE/UPDATE/DELETE始终逐条记录，不受策略影响。
+ * 合并记录的operationTime是第一次操作的时间，写入时已落后最多一个窗口，ID在写入时分配，按ID续读的读取方不会遗漏。
+ */
+@Service
+public class AuditPolicyServiceImpl implements AuditPolicyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditPolicyServiceImpl.class);
+
+    private static final Set<String> EXACT_OPERATIONS = new HashSet<>(Arrays.asList("CREATE", "UPDATE", "DELETE"));
+
+    private final AuditPolicyProperties properties;
+    // 处于合并窗口中的记录，窗口结束或超过上限前每个键只保留一条
+    private final Map<CoalesceKey, Pending> pending = new ConcurrentHashMap<>();
+    private final Counter sampledOutCounter;
+    private final Counter coalescedCounter;
+
+    @Autowired
+    public AuditPolicyServiceImpl(AuditPolicyProperties properties, MeterRegistry meterRegistry) {
+        for (Map.Entry<String, AuditPolicyProperties.Rule> entry : properties.getRules().entrySet()) {
+            String operationType = entry.getKey().split(":", 2)[0];
+            if (EXACT_OPERATIONS.contains(operationType) && entry.getValue().getMode() != Mode.ALWAYS) {
+                throw new IllegalArgumentException("CREATE/UPDATE/DELETE操作必须逐条记录: " + entry.getKey());
+            }
+        }
+        this.properties = properties;
+        this.sampledOutCounter = Counter.builder("audit.log.sampled.out").register(meterRegistry);
+        this.coalescedCounter = Counter.builder("audit.log.coalesced").register(meterRegistry);
+        Gauge.builder("audit.log.coalesce.pending", pending, Map::size)
+                .description("Number of audit log entries waiting for their coalescing window to close")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void dispatch(AdminOperationLog log, Consumer<AdminOperationLog> sink) {
+        if (EXACT_OPERATIONS.contains(log.getOperationType())) {
+            sink.accept(log);
+            return;
+        }
+        AuditPolicyProperties.Rule rule = resolve(log.getOperationType(), log.getObjectType());
+        switch (rule.getMode()) {
+            case SAMPLED:
+                // 失败的操作不参与抽样
+                if ("FAILURE".equals(log.getResult())
+                        || ThreadLocalRandom.current().nextDouble() < rule.getSampleRate()) {
+                    sink.accept(log);
+                } else {
+                    sampledOutCounter.increment();
+                }
+                break;
+            case COALESCED:
+                coalesce(log, sink);
+                break;
+            default:
+                sink.accept(log);
+        }
+    }
+
+    private AuditPolicyProperties.Rule resolve(String operationType, String objectType) {
+        Map<String, AuditPolicyProperties.Rule> rules = properties.getRules();
+        AuditPolicyProperties.Rule rule = rules.get(operationType + ":" + objectType);
+        if (rule == null) {
+            rule = rules.get(operationType);
+        }
+        return rule != null ? rule : properties.getDefaults();
+    }
+
+    private void coalesce(AdminOperationLog log, Consumer<AdminOperationLog> sink) {
+        long now = System.currentTimeMillis();
+        Pending[] closed = new Pending[1];
+        boolean[] bypass = new boolean[1];
+        pending.compute(new CoalesceKey(log), (key, current) -> {
+            if (current != null && current.deadline > now) {
+                current.add(log.getOperationTime());
+                return current;
+            }
+            if (current != null) {
+                // 窗口已结束但定时任务尚未输出，由当前线程输出后开始新的窗口
+                closed[0] = current;
+            } else if (pending.size() >= properties.getMaxPending()) {
+                bypass[0] = true;
+                return null;
+            }
+            return new Pending(log, sink, now + properties.getCoalesceWindowInMs());
+        });
+        if (closed[0] != null) {
+            emit(closed[0]);
+        } else if (bypass[0]) {
+            sink.accept(log);
+        } else {
+            coalescedCounter.increment();
+        }
+    }
+
+    // 定时输出窗口已结束的合并记录
+    @Scheduled(fixedDelayString = "${app.audit-policy.flush-interval-in-ms:1000}")
+    public void flushExpired() {
+        flush(System.currentTimeMillis());
+    }
+
+    @Override
+    public void flush() {
+        flush(Long.MAX_VALUE);
+    }
+
+    private void flush(long now) {
+        for (CoalesceKey key : pending.keySet()) {
+            Pending[] removed = new Pending[1];
+            pending.computeIfPresent(key, (k, current) -> {
+                if (current.deadline > now) {
+                    return current;
+                }
+                removed[0] = current;
+                return null;
+            });
+            if (removed[0] != null) {
+                emit(removed[0]);
+            }
+        }
+    }
+
+    private void emit(Pending entry) {
+        try {
+            entry.sink.accept(entry.toLog());
+        } catch (RuntimeException e) {
+            logger.error("Failed to write coalesced audit log", e);
+        }
+    }
+
+    private static final class Pending {
+        private final AdminOperationLog log;
+        private final Consumer<AdminOperationLog> sink;
+        private final long deadline;
+        private int count = 1;
+        private LocalDateTime lastTime;
+
+        private Pending(AdminOperationLog log, Consumer<AdminOperationLog> sink, long deadline) {
+            this.log = log;
+            this.sink = sink;
+            this.deadline = deadline;
+            this.lastTime = log.getOperationTime();
+        }
+
+        private void add(LocalDateTime time) {
+            count++;
+            if (time.isAfter(lastTime)) {
+                lastTime = time;
+            }
+        }
+
+        private AdminOperationLog toLog() {
+            log.setOccurrences(count);
+            log.setLastOperationTime(count > 1 ? lastTime : null);
+            return log;
+        }
+    }
+
+    private static final class CoalesceKey {
+        private final Long adminId;
+        private final String adminUsername;
+        private final String operationType;
+        private final String objectType;
+        private final Long objectId;
+        private final String objectName;
+        private final String result;
+
+        private CoalesceKey(AdminOperationLog log) {
+            this.adminId = log.getAdminId();
+            this.adminUsername = log.getAdminUsername();
+            this.operationType = log.getOperationType();
+            this.objectType = log.getObjectType();
+            this.objectId = log.getObjectId();
+            this.objectName = log.getObjectName();
+            this.result = log.getResult();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CoalesceKey)) {
+                return false;
+            }
+            CoalesceKey other = (CoalesceKey) o;
+            return Objects.equals(adminId, other.adminId)
+                    && Objects.equals(adminUsername, other.adminUsername)
+                    && Objects.equals(operationType, other.operationType)
+                    && Objects.equals(objectType, other.objectType)
+                    && Objects.equals(objectId, other.objectId)
+                    && Objects.equals(objectName, other.objectName)
+                    && Objects.equals(result, other.result);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(adminId, adminUsername, operationType, objectType, objectId, objectName, result);
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.service.AuditDictionaryService;
+import com.example.pim.service.AuditLogPartitionService;
+import com.example.pim.service.AuditLogStreamService;
+import com.example.pim.service.AuditLogWriter;
+import com.example.pim.service.LogRollupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 操作日志的异步批量写入
+ * 请求线程只把日志放入有界队列，由单独的写入线程按批次INSERT；队列已满时按配置的策略处理：
+ * BLOCK 等待队列空出，超时后在请求线程中直接写入；
+ * DROP_QUERY 优先丢弃查询日志，为增删改日志腾出位置；
+ * SPILL 写入本地溢出文件，队列空闲时再补写到数据库。
+ * 应用关闭前写入队列中剩余的日志。
+ */
+@Service
+@ConditionalOnProperty(name = "app.auditLog.storage", havingValue = "database", matchIfMissing = true)
+public class BatchingAuditLogWriter implements AuditLogWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingAuditLogWriter.class);
+
+    // 日志直接写入所在的时间分区表；ID在写入前从序列中取得，推送给实时订阅者的日志带有ID
+    private static final String INSERT_SQL = "INSERT INTO %s (id, admin_id, admin_username, " +
+            "operation_type, object_type, object_id, object_name, result, operation_time, ip_address, " +
+            "occurrences, last_operation_time) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String QUERY = "QUERY";
+
+    public enum OverflowPolicy {
+        BLOCK, DROP_QUERY, SPILL
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LogRollupService logRollupService;
+    private final AuditDictionaryService auditDictionaryService;
+    private final AuditLogPartitionService auditLogPartitionService;
+    private final AuditLogStreamService auditLogStreamService;
+    private final ObjectMapper objectMapper;
+    private final ArrayBlockingQueue<AdminOperationLog> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final long flushIntervalInMs;
+    private final long blockTimeoutInMs;
+    private final Path spillFile;
+    private final Path replayFile;
+    private final Object spillLock = new Object();
+    private final Object writeLock = new Object();
+
+    private final DistributionSummary batchSizeSummary;
+    private final Timer writeTimer;
+    private final Counter writtenCounter;
+    private final Counter droppedCounter;
+    private final Counter spilledCounter;
+    private final Counter failedCounter;
+    private final Counter expiredCounter;
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    @Autowired
+    public BatchingAuditLogWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                  LogRollupService logRollupService, AuditDictionaryService auditDictionaryService,
+                                  AuditLogPartitionService auditLogPartitionService,
+                                  AuditLogStreamService auditLogStreamService, ObjectMapper objectMapper,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.auditLog.queueCapacity:10000}") int queueCapacity,
+                                  @Value("${app.auditLog.batchSize:200}") int batchSize,
+                                  @Value("${app.auditLog.flushIntervalInMs:500}") long flushIntervalInMs,
+                                  @Value("${app.auditLog.overflowPolicy:DROP_QUERY}") OverflowPolicy overflowPolicy,
+                                  @Value("${app.auditLog.blockTimeoutInMs:1000}") long blockTimeoutInMs,
+                                  @Value("${app.auditLog.spillDir:./data/audit-spill}") String spillDir) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.logRollupService = logRollupService;
+        this.auditDictionaryService = auditDictionaryService;
+        this.auditLogPartitionService = auditLogPartitionService;
+        this.auditLogStreamService = auditLogStreamService;
+        this.objectMapper = objectMapper;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalInMs = flushIntervalInMs;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeoutInMs = blockTimeoutInMs;
+        this.spillFile = Paths.get(spillDir, "audit-spill.ndjson");
+        this.replayFile = Paths.get(spillDir, "audit-spill.replay");
+
+        Gauge.builder("audit.log.queue.depth", queue, ArrayBlockingQueue::size)
+                .description("等待写入的操作日志数量")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("audit.log.batch.size")
+                .description("每批写入的操作日志数量")
+                .register(meterRegistry);
+        this.writeTimer = Timer.builder("audit.log.write")
+                .description("批量写入操作日志的耗时")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("audit.log.written").register(meterRegistry);
+        this.droppedCounter = Counter.builder("audit.log.dropped").register(meterRegistry);
+        this.spilledCounter = Counter.builder("audit.log.spilled").register(meterRegistry);
+        this.failedCounter = Counter.builder("audit.log.failed").register(meterRegistry);
+        this.expiredCounter = Counter.builder("audit.log.expired").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::writeLoop, "audit-log-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @Override
+    public void submit(AdminOperationLog log) {
+        if (queue.offer(log)) {
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP_QUERY:
+                if (QUERY.equals(log.getOperationType())) {
+                    droppedCounter.increment();
+                    return;
+                }
+                // 移除队列中一条查询日志，为增删改日志腾出位置
+                if (evictQuery() && queue.offer(log)) {
+                    return;
+                }
+                offerOrWrite(log);
+                break;
+            case SPILL:
+                spill(log);
+                break;
+            default:
+                offerOrWrite(log);
+                break;
+        }
+    }
+
+    private boolean evictQuery() {
+        Iterator<AdminOperationLog> it = queue.iterator();
+        while (it.hasNext()) {
+            if (QUERY.equals(it.next().getOperationType())) {
+                it.remove();
+                droppedCounter.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // 在限定时间内等待队列空出，超时后在当前线程直接写入，保证不丢失
+    private void offerOrWrite(AdminOperationLog log) {
+        try {
+            if (queue.offer(log, blockTimeoutInMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<AdminOperationLog> single = new ArrayList<>(1);
+        single.add(log);
+        write(single);
+    }
+
+    private void spill(AdminOperationLog log) {
+        try {
+            String line = objectMapper.writeValueAsString(log);
+            synchronized (spillLock) {
+                Files.createDirectories(spillFile.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            spilledCounter.increment();
+        } catch (IOException e) {
+            // 溢出文件不可用时退回到阻塞写入
+            logger.error("Failed to spill audit log, writing synchronously", e);
+            offerOrWrite(log);
+        }
+    }
+
+    private void writeLoop() {
+        List<AdminOperationLog> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                AdminOperationLog first = queue.poll(flushIntervalInMs, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    // 队列空闲时补写溢出文件中的日志
+                    replaySpill();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Failed to write audit logs", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        List<AdminOperationLog> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            write(batch);
+            batch.clear();
+        }
+        replaySpill();
+    }
+
+    private void write(List<AdminOperationLog> batch) {
+        long start = System.nanoTime();
+        // 写入线程和溢出时的同步写入串行执行，避免并发插入同一统计区间
+        synchronized (writeLock) {
+            try {
+                writtenCounter.increment(insert(batch));
+            } catch (RuntimeException e) {
+                // 整批失败时逐条写入，避免一条错误数据导致整批丢失
+                logger.warn("Batch insert of {} audit logs failed, retrying one by one", batch.size(), e);
+                for (AdminOperationLog log : batch) {
+                    try {
+                        writtenCounter.increment(insert(Collections.singletonList(log)));
+                    } catch (RuntimeException ex) {
+                        failedCounter.increment();
+                        logger.error("Failed to write audit log {}", log, ex);
+                    }
+                }
+            }
+        }
+        batchSizeSummary.record(batch.size());
+        writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // 日志和统计计数在同一事务中写入；字典编码和分区表在事务之外创建，不会随日志写入失败而回滚。
+    // 从取得分区到事务提交都在写入屏障内，期间分区不会被归档删除
+    private int insert(List<AdminOperationLog> batch) {
+        List<AdminOperationLog> retained = auditLogPartitionService.withinWriteBarrier(() -> {
+            Map<String, List<AdminOperationLog>> logsByPartition = new LinkedHashMap<>();
+            List<AdminOperationLog> logs = new ArrayList<>(batch.size());
+            for (AdminOperationLog log : batch) {
+                String partition = auditLogPartitionService.partitionFor(log.getOperationTime());
+                if (partition == null) {
+                    // 补写的旧日志所在分区已超过保留期限被删除，不再写入
+                    expiredCounter.increment();
+                    continue;
+                }
+                logsByPartition.computeIfAbsent(partition, p -> new ArrayList<>()).add(log);
+                logs.add(log);
+            }
+            if (!logs.isEmpty()) {
+                assignIds(logs);
+                // 在事务之外完成字典编码，新分配的编码已提交，事务回滚时不会与内存中的字典不一致
+                Map<String, List<Object[]>> argsByPartition = new LinkedHashMap<>();
+                logsByPartition.forEach((partition, partitionLogs) -> {
+                    List<Object[]> args = new ArrayList<>(partitionLogs.size());
+                    for (AdminOperationLog log : partitionLogs) {
+                        args.add(toArg(log));
+                    }
+                    argsByPartition.put(partition, args);
+                });
+                transactionTemplate.executeWithoutResult(status -> {
+                    argsByPartition.forEach((partition, args) ->
+                            jdbcTemplate.batchUpdate(String.format(INSERT_SQL, partition), args));
+                    logRollupService.record(logs);
+                });
+            }
+            return logs;
+        });
+        if (retained.isEmpty()) {
+            return 0;
+        }
+        // 提交成功后推送给实时订阅者
+        retained.forEach(auditLogStreamService::publish);
+        return retained.size();
+    }
+
+    private synchronized void replaySpill() {
+        try {
+            synchronized (spillLock) {
+                // 上次未补写完成的文件优先处理，否则取出当前溢出文件
+                if (!Files.exists(replayFile)) {
+                    if (!Files.exists(spillFile)) {
+                        return;
+                    }
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            List<AdminOperationLog> batch = new ArrayList<>(batchSize);
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        batch.add(objectMapper.readValue(line, AdminOperationLog.class));
+                    } catch (IOException e) {
+                        // 跳过写入中断等原因造成的不完整行
+                        failedCounter.increment();
+                        logger.error("Skipping malformed spilled audit log: {}", line, e);
+                        continue;
+                    }
+                    if (batch.size() >= batchSize) {
+                        write(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+            Files.delete(replayFile);
+        } catch (IOException e) {
+            logger.error("Failed to replay spilled audit logs", e);
+        }
+    }
+
+    // 整批失败后逐条重试时沿用已分配的ID
+    private void assignIds(List<AdminOperationLog> logs) {
+        int missing = 0;
+        for (AdminOperationLog log : logs) {
+            if (log.getId() == null) {
+                missing++;
+            }
+        }
+        long[] ids = auditLogPartitionService.allocateIds(missing);
+        int next = 0;
+        for (AdminOperationLog log : logs) {
+            if (log.getId() == null) {
+                log.setId(ids[next++]);
+            }
+        }
+    }
+
+    private Object[] toArg(AdminOperationLog log) {
+        return new Object[]{log.getId(), log.getAdminId(),
+                encode(AuditDictionaryService.ADMIN_USERNAME, log.getAdminUsername()),
+                encode(AuditDictionaryService.OPERATION_TYPE, log.getOperationType()),
+                encode(AuditDictionaryService.OBJECT_TYPE, log.getObjectType()),
+                log.getObjectId(), log.getObjectName(),
+                encode(AuditDictionaryService.RESULT, log.getResult()),
+                Timestamp.valueOf(log.getOperationTime()), log.getIpAddress(), log.getOccurrences(),
+                log.getLastOperationTime() != null ? Timestamp.valueOf(log.getLastOperationTime()) : null};
+    }
+
+    private Integer encode(String category, String value) {
+        return value == null ? null : auditDictionaryService.encode(category, value);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (writerThread != null) {
+            // 不中断写入线程，避免打断正在进行的数据库写入，等待其在下一次轮询超时后退出
+            try {
+                writerThread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // 关闭前写入剩余日志
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Failed to flush audit logs on shutdown", e);
+        }
+    }
+}
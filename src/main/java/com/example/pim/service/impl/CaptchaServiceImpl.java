@@ -0,0 +1,185 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.service.CaptchaService;
+import com.example.pim.util.CaptchaChallengeSigner;
+import com.example.pim.util.CaptchaUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 预生成验证码缓冲池
+ * 后台线程提前渲染验证码放入有界环形队列，请求线程直接取出；
+ * 补充速度根据最近的消耗速度自适应调整，池中不足一半时全速补充，池空时在请求线程中即时生成。
+ */
+@Service
+public class CaptchaServiceImpl implements CaptchaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptchaServiceImpl.class);
+
+    // 消耗速度的指数平滑系数
+    private static final double RATE_SMOOTHING = 0.3;
+
+    private static final String SESSION_ATTRIBUTE = "captcha";
+
+    private final CaptchaChallengeSigner challengeSigner;
+    private final boolean sessionFallback;
+    private final boolean enabled;
+    private final int poolSize;
+    private final double minRefillPerSecond;
+    private final double maxRefillPerSecond;
+    private final ArrayBlockingQueue<CaptchaUtil.CaptchaResult> pool;
+
+    private final LongAdder consumed = new LongAdder();
+    private final Counter hits;
+    private final Counter misses;
+
+    private volatile double refillPerSecond;
+    private volatile boolean running;
+    private Thread refillThread;
+
+    @Autowired
+    public CaptchaServiceImpl(MeterRegistry meterRegistry, CaptchaChallengeSigner challengeSigner,
+                              @Value("${app.captcha.sessionFallback:false}") boolean sessionFallback,
+                              @Value("${app.captcha.pool.enabled:true}") boolean enabled,
+                              @Value("${app.captcha.pool.size:256}") int poolSize,
+                              @Value("${app.captcha.pool.minRefillPerSecond:5}") double minRefillPerSecond,
+                              @Value("${app.captcha.pool.maxRefillPerSecond:200}") double maxRefillPerSecond) {
+        this.challengeSigner = challengeSigner;
+        this.sessionFallback = sessionFallback;
+        this.enabled = enabled;
+        this.poolSize = Math.max(1, poolSize);
+        this.minRefillPerSecond = Math.max(0.1, minRefillPerSecond);
+        this.maxRefillPerSecond = Math.max(this.minRefillPerSecond, maxRefillPerSecond);
+        this.pool = new ArrayBlockingQueue<>(this.poolSize);
+        this.refillPerSecond = this.minRefillPerSecond;
+
+        this.hits = Counter.builder("captcha.pool.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("captcha.pool.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("captcha.pool.size", pool, ArrayBlockingQueue::size)
+                .description("池中可用的预生成验证码数量")
+                .register(meterRegistry);
+        Gauge.builder("captcha.pool.refill.rate", this, s -> s.refillPerSecond)
+                .description("当前每秒补充的验证码数量")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        refillThread = new Thread(this::refillLoop, "captcha-refill");
+        refillThread.setDaemon(true);
+        refillThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (refillThread != null) {
+            refillThread.interrupt();
+        }
+    }
+
+    @Override
+    public String issueChallenge(CaptchaUtil.CaptchaResult captcha, HttpServletRequest request) {
+        // 兼容旧客户端：仅在开启会话回退时才创建会话保存验证码
+        if (sessionFallback) {
+            HttpSession session = request.getSession();
+            session.setAttribute(SESSION_ATTRIBUTE, captcha.getCode());
+            session.setMaxInactiveInterval(5 * 60); // 5分钟过期
+        }
+        return challengeSigner.sign(captcha.getCode());
+    }
+
+    @Override
+    public boolean verifyChallenge(String challengeId, String answer, HttpServletRequest request) {
+        if (answer == null || answer.trim().isEmpty()) {
+            return false;
+        }
+        if (challengeId != null && !challengeId.isEmpty()) {
+            return challengeSigner.verify(challengeId, answer);
+        }
+        if (!sessionFallback) {
+            return false;
+        }
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return false;
+        }
+        String sessionCaptcha = (String) session.getAttribute(SESSION_ATTRIBUTE);
+        // 无论是否正确都移除，验证码只能使用一次
+        session.removeAttribute(SESSION_ATTRIBUTE);
+        return sessionCaptcha != null && sessionCaptcha.equalsIgnoreCase(answer.trim());
+    }
+
+    @Override
+    public CaptchaUtil.CaptchaResult nextCaptcha() throws IOException {
+        consumed.increment();
+        CaptchaUtil.CaptchaResult captcha = pool.poll();
+        if (captcha != null) {
+            hits.increment();
+            return captcha;
+        }
+        // 池已空，在请求线程中即时生成
+        misses.increment();
+        return CaptchaUtil.generateCaptcha();
+    }
+
+    private void refillLoop() {
+        long lastRateUpdate = System.nanoTime();
+        double consumeRate = 0;
+        while (running) {
+            try {
+                long now = System.nanoTime();
+                long elapsed = now - lastRateUpdate;
+                if (elapsed >= TimeUnit.SECONDS.toNanos(1)) {
+                    // 根据最近的消耗速度调整补充速度，留出20%余量
+                    double observed = consumed.sumThenReset() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+                    consumeRate = consumeRate == 0 ? observed : RATE_SMOOTHING * observed + (1 - RATE_SMOOTHING) * consumeRate;
+                    refillPerSecond = Math.min(maxRefillPerSecond, Math.max(minRefillPerSecond, consumeRate * 1.2));
+                    lastRateUpdate = now;
+                }
+
+                // 池满时阻塞等待
+                pool.put(CaptchaUtil.generateCaptcha());
+
+                // 池中超过一半时按当前补充速度放慢生成
+                if (pool.size() * 2 >= poolSize) {
+                    TimeUnit.MICROSECONDS.sleep((long) (TimeUnit.SECONDS.toMicros(1) / refillPerSecond));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Failed to pre-render captcha", e);
+                try {
+                    TimeUnit.SECONDS.sleep(1);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -2,7 +2,15 @@ package com.example.pim.service.impl;
 
 import com.example.pim.entity.User;
 import com.example.pim.repository.UserRepository;
+import com.example.pim.util.AuthenticatedUser;
+import com.example.pim.util.ExpiringCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -10,31 +18,101 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    private static final String CACHE_METRIC_PREFIX = "user.details.cache";
+
     private final UserRepository userRepository;
 
+    // 按角色共享的不可变权限列表
+    private final ConcurrentHashMap<String, List<GrantedAuthority>> authoritiesByRole = new ConcurrentHashMap<>();
+
+    private final ExpiringCache<String, CachedUser> userCache;
+    private final long cacheTtlInMs;
+    private final Timer loadTimer;
+
     @Autowired
-    public CustomUserDetailsService(UserRepository userRepository) {
+    public CustomUserDetailsService(UserRepository userRepository, MeterRegistry meterRegistry,
+                                    @Value("${app.userDetailsCacheMaxSize:10000}") int cacheMaxSize,
+                                    @Value("${app.userDetailsCacheTtlInMs:600000}") long cacheTtlInMs) {
         this.userRepository = userRepository;
+        this.userCache = new ExpiringCache<>(cacheMaxSize);
+        this.cacheTtlInMs = cacheTtlInMs;
+
+        this.loadTimer = Timer.builder(CACHE_METRIC_PREFIX + ".load")
+                .description("缓存未命中时从数据库加载用户的耗时")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_METRIC_PREFIX + ".requests", userCache, ExpiringCache::getHitCount)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_METRIC_PREFIX + ".requests", userCache, ExpiringCache::getMissCount)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        FunctionCounter.builder(CACHE_METRIC_PREFIX + ".evictions", userCache, ExpiringCache::getEvictionCount)
+                .register(meterRegistry);
+        Gauge.builder(CACHE_METRIC_PREFIX + ".hit.ratio", userCache, ExpiringCache::getHitRatio)
+                .register(meterRegistry);
+        Gauge.builder(CACHE_METRIC_PREFIX + ".size", userCache, ExpiringCache::size)
+                .register(meterRegistry);
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username)
-                .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
+        CachedUser cached = userCache.get(username);
+        if (cached == null) {
+            long start = System.nanoTime();
+            User user = userRepository.findByUsername(username)
+                    .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
+            cached = new CachedUser(user, authoritiesFor(user.getRole()));
+            loadTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            userCache.put(username, cached, System.currentTimeMillis() + cacheTtlInMs);
+        }
 
-        // 使用用户实体中的角色字段
-        String userRole = user.getRole() != null ? user.getRole() : "ROLE_USER";
-        
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                user.getEnabled(),
-                true, true, true, // 账户未过期、凭证未过期、账户未锁定
-                Collections.singletonList(new SimpleGrantedAuthority(userRole))
+        // 每次返回新的UserDetails实例，认证完成后擦除密码不会影响缓存
+        return new AuthenticatedUser(
+                cached.id,
+                cached.username,
+                cached.password,
+                cached.enabled,
+                cached.authorities
         );
     }
-}
\ No newline at end of file
+
+    /**
+     * 用户信息变更后移除缓存
+     */
+    public void evictUser(String username) {
+        if (username != null) {
+            userCache.invalidate(username);
+        }
+    }
+
+    private List<GrantedAuthority> authoritiesFor(String role) {
+        // 使用用户实体中的角色字段
+        String userRole = role != null ? role : "ROLE_USER";
+        return authoritiesByRole.computeIfAbsent(userRole,
+                r -> Collections.singletonList(new SimpleGrantedAuthority(r)));
+    }
+
+    // 缓存中保存的用户快照，只包含认证所需字段
+    private static final class CachedUser {
+        private final Long id;
+        private final String username;
+        private final String password;
+        private final boolean enabled;
+        private final List<GrantedAuthority> authorities;
+
+        private CachedUser(User user, List<GrantedAuthority> authorities) {
+            this.id = user.getId();
+            this.username = user.getUsername();
+            this.password = user.getPassword();
+            this.enabled = user.getEnabled();
+            this.authorities = authorities;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.service.AdminOperationLogService;
+import com.example.pim.service.AuditLogStreamService;
+import com.example.pim.service.AuditPolicyService;
+import com.example.pim.util.AuditJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 基于只追加文件的操作日志服务
+ * 设置 app.auditLog.storage=journal 时代替数据库表保存操作日志，写入只是一次内存拷贝，
+ * 后台线程定期将映射内存刷写到磁盘；查询按时间范围扫描稀疏索引命中的块。
+ */
+@Service
+@ConditionalOnProperty(name = "app.auditLog.storage", havingValue = "journal")
+public class JournalAdminOperationLogServiceImpl implements AdminOperationLogService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalAdminOperationLogServiceImpl.class);
+
+    private static final Comparator<AdminOperationLog> NEWEST_FIRST =
+            Comparator.comparing(AdminOperationLog::getOperationTime)
+                    .thenComparing(AdminOperationLog::getId)
+                    .reversed();
+
+    private final AuditJournal journal;
+    private final AuditPolicyService auditPolicyService;
+    private final AuditLogStreamService auditLogStreamService;
+    private final ScheduledExecutorService fsyncExecutor;
+
+    public JournalAdminOperationLogServiceImpl(
+            AuditPolicyService auditPolicyService,
+            AuditLogStreamService auditLogStreamService,
+            @Value("${app.auditLog.journal.dir:./data/audit-journal}") String dir,
+            @Value("${app.auditLog.journal.segmentSizeInMb:64}") int segmentSizeInMb,
+            @Value("${app.auditLog.journal.rollIntervalInMinutes:60}") long rollIntervalInMinutes,
+            @Value("${app.auditLog.journal.indexInterval:256}") int indexInterval,
+            @Value("${app.auditLog.journal.fsyncIntervalInMs:1000}") long fsyncIntervalInMs,
+            @Value("${app.auditLog.journal.mappedSegments:16}") int mappedSegments) throws IOException {
+        this.journal = new AuditJournal(Paths.get(dir), segmentSizeInMb * 1024 * 1024,
+                TimeUnit.MINUTES.toMillis(rollIntervalInMinutes), indexInterval, mappedSegments);
+        this.auditPolicyService = auditPolicyService;
+        this.auditLogStreamService = auditLogStreamService;
+        this.fsyncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "audit-journal-fsync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.fsyncExecutor.scheduleWithFixedDelay(this::forceQuietly, fsyncIntervalInMs, fsyncIntervalInMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void logOperation(Authentication authentication, String operationType, String objectType,
+                             Long objectId, String objectName, boolean isSuccess, HttpServletRequest request) {
+        AdminOperationLog log = AdminOperationLogServiceImpl.buildLog(authentication, operationType, objectType,
+                objectId, objectName, isSuccess, request);
+        if (log != null) {
+            auditPolicyService.dispatch(log, this::append);
+        }
+    }
+
+    private void append(AdminOperationLog log) {
+        journal.append(log);
+        auditLogStreamService.publish(log);
+    }
+
+    @Override
+    public void logCreate(Authentication authentication, String objectType, Long objectId, String objectName,
+                          boolean isSuccess, HttpServletRequest request) {
+        logOperation(authentication, "CREATE", objectType, objectId, objectName, isSuccess, request);
+    }
+
+    @Override
+    public void logUpdate(Authentication authentication, String objectType, Long objectId, String objectName,
+                          boolean isSuccess, HttpServletRequest request) {
+        logOperation(authentication, "UPDATE", objectType, objectId, objectName, isSuccess, request);
+    }
+
+    @Override
+    public void logDelete(Authentication authentication, String objectType, Long objectId, String objectName,
+                          boolean isSuccess, HttpServletRequest request) {
+        logOperation(authentication, "DELETE", objectType, objectId, objectName, isSuccess, request);
+    }
+
+    @Override
+    public void logQuery(Authentication authentication, String objectType, Long objectId, String objectName,
+                         boolean isSuccess, HttpServletRequest request) {
+        logOperation(authentication, "QUERY", objectType, objectId, objectName, isSuccess, request);
+    }
+
+    @Override
+    public Page<AdminOperationLog> findLogs(String adminUsername, String operationType, String objectType,
+                                            LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                                            Pageable pageable) {
+        Sort.Order timeOrder = pageable.getSort().getOrderFor("operationTime");
+        Comparator<AdminOperationLog> order = timeOrder != null && timeOrder.isAscending()
+                ? NEWEST_FIRST.reversed() : NEWEST_FIRST;
+
+        // 只保留当前页及之前的记录，堆顶是其中排序最靠后的一条
+        int keep = (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize());
+        PriorityQueue<AdminOperationLog> top = new PriorityQueue<>(Math.max(1, Math.min(keep, 1024)), order.reversed());
+        long[] total = new long[1];
+        journal.scan(startTime, endTime, log -> {
+            if (!matches(log, adminUsername, operationType, objectType, success)) {
+                return;
+            }
+            total[0]++;
+            top.offer(log);
+            if (top.size() > keep) {
+                top.poll();
+            }
+        });
+
+        List<AdminOperationLog> sorted = new ArrayList<>(top);
+        sorted.sort(order);
+        int from = (int) Math.min(pageable.getOffset(), sorted.size());
+        return new PageImpl<>(sorted.subList(from, sorted.size()), pageable, total[0]);
+    }
+
+    @Override
+    public Slice<AdminOperationLog> findLogsBefore(String adminUsername, String operationType, String objectType,
+                                                   LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                                                   LocalDateTime cursorTime, Long cursorId, int size) {
+        long lastId = cursorId != null ? cursorId : Long.MAX_VALUE;
+        // 游标之前的记录同样只保留size+1条，多出的一条用于判断是否还有下一页
+        int keep = size + 1;
+        PriorityQueue<AdminOperationLog> top = new PriorityQueue<>(keep, NEWEST_FIRST.reversed());
+        LocalDateTime scanEnd = cursorTime != null && (endTime == null || cursorTime.isBefore(endTime))
+                ? cursorTime : endTime;
+        journal.scan(startTime, scanEnd, log -> {
+            if (cursorTime != null && !log.getOperationTime().isBefore(cursorTime)
+                    && !(log.getOperationTime().isEqual(cursorTime) && log.getId() < lastId)) {
+                return;
+            }
+            if (!matches(log, adminUsername, operationType, objectType, success)) {
+                return;
+            }
+            top.offer(log);
+            if (top.size() > keep) {
+                top.poll();
+            }
+        });
+
+        List<AdminOperationLog> sorted = new ArrayList<>(top);
+        sorted.sort(NEWEST_FIRST);
+        boolean hasNext = sorted.size() > size;
+        return new SliceImpl<>(hasNext ? sorted.subList(0, size) : sorted, PageRequest.of(0, size), hasNext);
+    }
+
+    @Override
+    public long estimateLogCount(String adminUsername, String operationType, String objectType,
+                                 LocalDateTime startTime, LocalDateTime endTime, Boolean success) {
+        long[] count = new long[1];
+        journal.scan(startTime, endTime, log -> {
+            if (matches(log, adminUsername, operationType, objectType, success)) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+
+    @Override
+    public void exportLogs(String adminUsername, String operationType, String objectType,
+                           LocalDateTime startTime, LocalDateTime endTime, Boolean success,
+                           Consumer<AdminOperationLog> consumer) {
+        // 日志文件按写入顺序扫描，即按时间升序
+        journal.scan(startTime, endTime, log -> {
+            if (matches(log, adminUsername, operationType, objectType, success)) {
+                consumer.accept(log);
+            }
+        });
+    }
+
+    private static boolean matches(AdminOperationLog log, String adminUsername, String operationType,
+                                   String objectType, Boolean success) {
+        // 与数据库查询保持一致：用户名前缀匹配，操作类型和对象类型等值匹配
+        return startsWith(log.getAdminUsername(), adminUsername)
+                && equalsIfPresent(log.getOperationType(), operationType)
+                && equalsIfPresent(log.getObjectType(), objectType)
+                && (success == null || success == "SUCCESS".equals(log.getResult()));
+    }
+
+    private static boolean startsWith(String value, String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return true;
+        }
+        return value != null && value.startsWith(filter.trim());
+    }
+
+    private static boolean equalsIfPresent(String value, String filter) {
+        if (filter == null || filter.trim().isEmpty()) {
+            return true;
+        }
+        return filter.trim().equals(value);
+    }
+
+    @Override
+    public Map<String, Long> getLogStatistics(String adminUsername, LocalDateTime startTime, LocalDateTime endTime) {
+        Map<String, Long> statistics = new HashMap<>();
+
+        // 初始化常见操作类型的计数为0
+        statistics.put("CREATE", 0L);
+        statistics.put("UPDATE", 0L);
+        statistics.put("DELETE", 0L);
+        statistics.put("QUERY", 0L);
+        statistics.put("OTHER", 0L);
+
+        journal.scan(startTime, endTime, log -> {
+            if (!startsWith(log.getAdminUsername(), adminUsername)) {
+                return;
+            }
+            String type = statistics.containsKey(log.getOperationType()) ? log.getOperationType() : "OTHER";
+            // 合并记录按其代表的操作次数计数
+            statistics.merge(type, (long) log.getOccurrences(), Long::sum);
+        });
+        return statistics;
+    }
+
+    @Override
+    public List<String> getDistinctOperationTypes() {
+        return new ArrayList<>(journal.getOperationTypes());
+    }
+
+    @Override
+    public List<String> getDistinctObjectTypes() {
+        return new ArrayList<>(journal.getObjectTypes());
+    }
+
+    private void forceQuietly() {
+        try {
+            journal.force();
+        } catch (Exception e) {
+            logger.error("Failed to fsync audit journal", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        auditPolicyService.flush();
+        fsyncExecutor.shutdown();
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Failed to close audit journal", e);
+        }
+    }
+}
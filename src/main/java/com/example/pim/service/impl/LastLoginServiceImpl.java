@@ -0,0 +1,139 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.service.LastLoginService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 最后登录时间的延迟写入
+ * 同一用户的多次登录只保留最新时间，按固定间隔或待写入数量达到阈值时批量UPDATE，应用关闭前写入剩余数据。
+ */
+@Service
+public class LastLoginServiceImpl implements LastLoginService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LastLoginServiceImpl.class);
+
+    private static final String UPDATE_SQL = "UPDATE users SET last_login = ? WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrentHashMap<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final int flushThreshold;
+    private final int batchSize;
+
+    private final Timer flushTimer;
+    private final Counter writtenCounter;
+
+    @Autowired
+    public LastLoginServiceImpl(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry,
+                                @Value("${app.lastLogin.flushIntervalInMs:1000}") long flushIntervalInMs,
+                                @Value("${app.lastLogin.flushThreshold:500}") int flushThreshold,
+                                @Value("${app.lastLogin.batchSize:200}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushThreshold = flushThreshold;
+        this.batchSize = batchSize;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "last-login-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.scheduleWithFixedDelay(this::flushQuietly, flushIntervalInMs, flushIntervalInMs,
+                TimeUnit.MILLISECONDS);
+
+        Gauge.builder("last.login.queue.depth", pending, Map::size)
+                .description("等待写入的最后登录时间数量")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("last.login.flush")
+                .description("批量写入最后登录时间的耗时")
+                .register(meterRegistry);
+        this.writtenCounter = Counter.builder("last.login.written")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void record(Long userId, LocalDateTime loginTime) {
+        pending.merge(userId, loginTime, (a, b) -> a.isAfter(b) ? a : b);
+        // 达到阈值时提前触发一次写入，不阻塞登录请求
+        if (pending.size() >= flushThreshold && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        List<Map.Entry<Long, LocalDateTime>> drained = new ArrayList<>(pending.size());
+        for (Map.Entry<Long, LocalDateTime> entry : pending.entrySet()) {
+            // 只移除快照中的值，期间写入的更新时间留待下次写入
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                drained.add(entry);
+            }
+        }
+
+        for (int from = 0; from < drained.size(); from += batchSize) {
+            List<Map.Entry<Long, LocalDateTime>> batch = drained.subList(from, Math.min(from + batchSize, drained.size()));
+            List<Object[]> args = new ArrayList<>(batch.size());
+            for (Map.Entry<Long, LocalDateTime> entry : batch) {
+                args.add(new Object[]{Timestamp.valueOf(entry.getValue()), entry.getKey()});
+            }
+            try {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+                writtenCounter.increment(batch.size());
+            } catch (RuntimeException e) {
+                // 写入失败时把本批及之后未写入的数据放回队列，保留较新的时间
+                for (Map.Entry<Long, LocalDateTime> entry : drained.subList(from, drained.size())) {
+                    pending.merge(entry.getKey(), entry.getValue(), (a, b) -> a.isAfter(b) ? a : b);
+                }
+                throw e;
+            }
+        }
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Failed to write last login times", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 关闭前写入剩余数据
+        flushQuietly();
+    }
+}
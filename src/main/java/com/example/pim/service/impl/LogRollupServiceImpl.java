@@ -0,0 +1,283 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.example.pim.repository.AdminOperationLogSpecifications;
+import com.example.pim.service.AuditArchiveService;
+import com.example.pim.service.AuditDictionaryService;
+import com.example.pim.service.LogRollupService;
+import com.example.pim.util.AuditArchive;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 操作日志的分钟和小时统计
+ * 日志写入时在同一事务内累加对应区间的计数；查询任意时间范围时，整小时部分读取小时统计，
+ * 首尾不足一小时的部分读取分钟统计，只有首尾不足一分钟的部分才查询原始日志。
+ */
+@Service
+@ConditionalOnProperty(name = "app.auditLog.storage", havingValue = "database", matchIfMissing = true)
+public class LogRollupServiceImpl implements LogRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LogRollupServiceImpl.class);
+
+    private static final int MINUTE = 1;
+    private static final int HOUR = 60;
+
+    private static final String UPDATE_SQL = "UPDATE admin_log_rollups SET log_count = log_count + ? " +
+            "WHERE bucket_minutes = ? AND bucket_start = ? AND admin_username = ? AND operation_type = ? " +
+            "AND object_type = ? AND result = ?";
+    private static final String INSERT_SQL = "INSERT INTO admin_log_rollups (log_count, bucket_minutes, " +
+            "bucket_start, admin_username, operation_type, object_type, result) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditDictionaryService auditDictionaryService;
+    private final AuditArchiveService auditArchiveService;
+
+    @Autowired
+    public LogRollupServiceImpl(JdbcTemplate jdbcTemplate, AuditDictionaryService auditDictionaryService,
+                                AuditArchiveService auditArchiveService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditDictionaryService = auditDictionaryService;
+        this.auditArchiveService = auditArchiveService;
+    }
+
+    // 统计表为空而日志表已有数据时（首次启用），根据现有日志补建统计
+    @PostConstruct
+    public void backfill() {
+        Long rollups = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM admin_log_rollups", Long.class);
+        if (rollups != null && rollups > 0) {
+            return;
+        }
+        Map<BucketKey, Long> deltas = new HashMap<>();
+        jdbcTemplate.query("SELECT admin_username, operation_type, object_type, result, operation_time, " +
+                "occurrences FROM admin_operation_logs", rs -> {
+            // 日志表中保存的是字典编码，统计表保存原始取值
+            accumulate(deltas, decode(AuditDictionaryService.ADMIN_USERNAME, rs.getInt(1)),
+                    decode(AuditDictionaryService.OPERATION_TYPE, rs.getInt(2)),
+                    decode(AuditDictionaryService.OBJECT_TYPE, rs.getInt(3)),
+                    decode(AuditDictionaryService.RESULT, rs.getInt(4)),
+                    rs.getTimestamp(5).toLocalDateTime(), rs.getInt(6));
+        });
+        if (!deltas.isEmpty()) {
+            insert(deltas.entrySet());
+            logger.info("Backfilled {} admin log rollup buckets", deltas.size());
+        }
+    }
+
+    @Override
+    public void record(List<AdminOperationLog> logs) {
+        Map<BucketKey, Long> deltas = new HashMap<>();
+        for (AdminOperationLog log : logs) {
+            accumulate(deltas, log.getAdminUsername(), log.getOperationType(), log.getObjectType(),
+                    log.getResult(), log.getOperationTime(), log.getOccurrences());
+        }
+
+        List<Map.Entry<BucketKey, Long>> entries = new ArrayList<>(deltas.entrySet());
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (Map.Entry<BucketKey, Long> entry : entries) {
+            args.add(toArgs(entry));
+        }
+        int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+
+        // 尚不存在的区间插入新行
+        List<Map.Entry<BucketKey, Long>> missing = new ArrayList<>();
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                missing.add(entries.get(i));
+            }
+        }
+        if (!missing.isEmpty()) {
+            insert(missing);
+        }
+    }
+
+    private void insert(Collection<Map.Entry<BucketKey, Long>> entries) {
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (Map.Entry<BucketKey, Long> entry : entries) {
+            args.add(toArgs(entry));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    // 合并记录按其代表的操作次数计入第一次操作所在的区间
+    private static void accumulate(Map<BucketKey, Long> deltas, String adminUsername, String operationType,
+                                   String objectType, String result, LocalDateTime time, long occurrences) {
+        deltas.merge(new BucketKey(MINUTE, time.truncatedTo(ChronoUnit.MINUTES), adminUsername, operationType,
+                objectType, result), occurrences, Long::sum);
+        deltas.merge(new BucketKey(HOUR, time.truncatedTo(ChronoUnit.HOURS), adminUsername, operationType,
+                objectType, result), occurrences, Long::sum);
+    }
+
+    private static Object[] toArgs(Map.Entry<BucketKey, Long> entry) {
+        BucketKey key = entry.getKey();
+        return new Object[]{entry.getValue(), key.bucketMinutes, Timestamp.valueOf(key.bucketStart),
+                key.adminUsername, key.operationType, key.objectType, key.result};
+    }
+
+    @Override
+    public void purgeBefore(LocalDateTime time) {
+        // 统计区间与分区边界对齐，按区间起始时间删除即可
+        int deleted = jdbcTemplate.update("DELETE FROM admin_log_rollups WHERE bucket_start < ?",
+                Timestamp.valueOf(time));
+        logger.info("Purged {} log rollups before {}", deleted, time);
+    }
+
+    @Override
+    public Map<String, Long> countByOperationType(String adminUsername, LocalDateTime startTime,
+                                                  LocalDateTime endTime) {
+        Map<String, Long> counts = new HashMap<>();
+        // 完整分钟区间为[minuteStart, minuteEnd)
+        LocalDateTime minuteStart = startTime != null ? ceil(startTime, ChronoUnit.MINUTES) : null;
+        LocalDateTime minuteEnd = endTime != null ? endTime.truncatedTo(ChronoUnit.MINUTES) : null;
+
+        if (minuteStart != null && minuteEnd != null && !minuteStart.isBefore(minuteEnd)) {
+            // 不包含完整的分钟，直接统计原始日志
+            countRaw(counts, adminUsername, startTime, endTime, true);
+            return counts;
+        }
+        if (startTime != null && startTime.isBefore(minuteStart)) {
+            countRaw(counts, adminUsername, startTime, minuteStart, false);
+        }
+        if (endTime != null) {
+            countRaw(counts, adminUsername, minuteEnd, endTime, true);
+        }
+
+        // 完整小时区间为[hourStart, hourEnd)
+        LocalDateTime hourStart = minuteStart != null ? ceil(minuteStart, ChronoUnit.HOURS) : null;
+        LocalDateTime hourEnd = minuteEnd != null ? minuteEnd.truncatedTo(ChronoUnit.HOURS) : null;
+        if (hourStart != null && hourEnd != null && !hourStart.isBefore(hourEnd)) {
+            sumBuckets(counts, MINUTE, adminUsername, minuteStart, minuteEnd);
+            return counts;
+        }
+        if (minuteStart != null && minuteStart.isBefore(hourStart)) {
+            sumBuckets(counts, MINUTE, adminUsername, minuteStart, hourStart);
+        }
+        sumBuckets(counts, HOUR, adminUsername, hourStart, hourEnd);
+        if (minuteEnd != null && hourEnd.isBefore(minuteEnd)) {
+            sumBuckets(counts, MINUTE, adminUsername, hourEnd, minuteEnd);
+        }
+        return counts;
+    }
+
+    // 统计[from, to)或[from, to]内的原始日志，已归档的部分从归档段中统计
+    private void countRaw(Map<String, Long> counts, String adminUsername, LocalDateTime from, LocalDateTime to,
+                          boolean inclusiveEnd) {
+        LocalDateTime archivedBefore = auditArchiveService.getArchivedBefore();
+        if (archivedBefore != null && from.isBefore(archivedBefore)) {
+            // 归档按微秒保存时间，不含结束时间即截止到前一微秒
+            LocalDateTime end = inclusiveEnd ? to : to.minusNanos(1000);
+            AuditArchive.Query query = AuditArchive.Query.of(adminUsername, null, null, from, end, null);
+            auditArchiveService.countByOperationType(query)
+                    .forEach((type, count) -> counts.merge(type, count, Long::sum));
+        }
+        StringBuilder sql = new StringBuilder("SELECT operation_type, SUM(occurrences) FROM admin_operation_logs " +
+                "WHERE operation_time >= ? AND operation_time ").append(inclusiveEnd ? "<= ?" : "< ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(to));
+        if (adminUsername != null && !adminUsername.trim().isEmpty()) {
+            // 日志表中的用户名是字典编码，前缀匹配先展开为编码列表
+            List<String> usernames = auditDictionaryService.valuesWithPrefix(AuditDictionaryService.ADMIN_USERNAME,
+                    adminUsername.trim());
+            if (usernames.isEmpty()) {
+                return;
+            }
+            sql.append(" AND admin_username IN (");
+            for (int i = 0; i < usernames.size(); i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+                args.add(auditDictionaryService.lookup(AuditDictionaryService.ADMIN_USERNAME, usernames.get(i)));
+            }
+            sql.append(")");
+        }
+        sql.append(" GROUP BY operation_type");
+        jdbcTemplate.query(sql.toString(), rs -> {
+            counts.merge(decode(AuditDictionaryService.OPERATION_TYPE, rs.getInt(1)), rs.getLong(2), Long::sum);
+        }, args.toArray());
+    }
+
+    private String decode(String category, int code) {
+        return auditDictionaryService.decode(category, code);
+    }
+
+    // 汇总[from, to)内的统计区间，参数为null表示不限
+    private void sumBuckets(Map<String, Long> counts, int bucketMinutes, String adminUsername,
+                            LocalDateTime from, LocalDateTime to) {
+        StringBuilder sql = new StringBuilder("SELECT operation_type, SUM(log_count) FROM admin_log_rollups " +
+                "WHERE bucket_minutes = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(bucketMinutes);
+        if (from != null) {
+            sql.append(" AND bucket_start >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND bucket_start < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        // 与日志列表查询一致，管理员用户名按前缀匹配
+        if (adminUsername != null && !adminUsername.trim().isEmpty()) {
+            sql.append(" AND admin_username LIKE ? ESCAPE '\\'");
+            args.add(AdminOperationLogSpecifications.escapeLike(adminUsername.trim()) + "%");
+        }
+        sql.append(" GROUP BY operation_type");
+        jdbcTemplate.query(sql.toString(), rs -> {
+            counts.merge(rs.getString(1), rs.getLong(2), Long::sum);
+        }, args.toArray());
+    }
+
+    private static LocalDateTime ceil(LocalDateTime time, ChronoUnit unit) {
+        LocalDateTime truncated = time.truncatedTo(unit);
+        return truncated.equals(time) ? time : truncated.plus(1, unit);
+    }
+
+    private static final class BucketKey {
+        private final int bucketMinutes;
+        private final LocalDateTime bucketStart;
+        private final String adminUsername;
+        private final String operationType;
+        private final String objectType;
+        private final String result;
+
+        private BucketKey(int bucketMinutes, LocalDateTime bucketStart, String adminUsername,
+                          String operationType, String objectType, String result) {
+            this.bucketMinutes = bucketMinutes;
+            this.bucketStart = bucketStart;
+            this.adminUsername = adminUsername;
+            this.operationType = operationType;
+            this.objectType = objectType;
+            this.result = result;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return bucketMinutes == other.bucketMinutes
+                    && bucketStart.equals(other.bucketStart)
+                    && Objects.equals(adminUsername, other.adminUsername)
+                    && Objects.equals(operationType, other.operationType)
+                    && Objects.equals(objectType, other.objectType)
+                    && Objects.equals(result, other.result);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucketMinutes, bucketStart, adminUsername, operationType, objectType, result);
+        }
+    }
+}
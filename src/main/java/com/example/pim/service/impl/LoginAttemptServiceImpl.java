@@ -0,0 +1,94 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.service.LoginAttemptService;
+import com.example.pim.util.LoginFailureTracker;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class LoginAttemptServiceImpl implements LoginAttemptService {
+
+    private final LoginFailureTracker userFailures;
+    private final LoginFailureTracker ipFailures;
+
+    // 同一IP在窗口内允许的最大失败次数，超过后在封禁时间内拒绝该IP的登录；不大于0时不按IP封禁
+    private final int maxAttemptsPerIp;
+    private final long ipBlockMillis;
+
+    // 用户失败次数默认不随时间清零，与原先记录在数据库中的计数一致：只在登录成功或锁定时清零
+    public LoginAttemptServiceImpl(@Value("${app.loginFailure.stripes:64}") int stripes,
+                                   @Value("${app.loginFailure.maxTrackedKeys:200000}") int maxTrackedKeys,
+                                   @Value("${app.loginFailure.windowMinutes:0}") long windowMinutes,
+                                   @Value("${app.loginFailure.maxAttemptsPerIp:20}") int maxAttemptsPerIp,
+                                   @Value("${app.loginFailure.ipWindowMinutes:10}") long ipWindowMinutes,
+                                   @Value("${app.loginFailure.ipBlockMinutes:10}") long ipBlockMinutes) {
+        this.userFailures = new LoginFailureTracker(stripes, maxTrackedKeys, TimeUnit.MINUTES.toMillis(windowMinutes));
+        this.ipFailures = new LoginFailureTracker(stripes, maxTrackedKeys, TimeUnit.MINUTES.toMillis(ipWindowMinutes));
+        this.maxAttemptsPerIp = maxAttemptsPerIp;
+        this.ipBlockMillis = TimeUnit.MINUTES.toMillis(ipBlockMinutes);
+    }
+
+    @Override
+    public int recordUserFailure(Long userId) {
+        return userFailures.recordFailure(userId, System.currentTimeMillis());
+    }
+
+    @Override
+    public void resetUser(Long userId) {
+        userFailures.reset(userId);
+    }
+
+    @Override
+    public void recordIpFailure(String ipAddress) {
+        if (ipAddress == null || maxAttemptsPerIp <= 0) {
+            return;
+        }
+        long key = ipKey(ipAddress);
+        long now = System.currentTimeMillis();
+        if (ipFailures.recordFailure(key, now) >= maxAttemptsPerIp) {
+            ipFailures.blockUntil(key, now + ipBlockMillis, now);
+        }
+    }
+
+    @Override
+    public long getIpBlockRemaining(String ipAddress) {
+        if (ipAddress == null || maxAttemptsPerIp <= 0) {
+            return 0;
+        }
+        return ipFailures.getBlockRemaining(ipKey(ipAddress), System.currentTimeMillis());
+    }
+
+    /**
+     * 将IP地址编码为long：IPv4直接按数值编码，其他格式取64位哈希并置最高位以区分
+     */
+    static long ipKey(String ip) {
+        long value = 0;
+        int part = 0;
+        int dots = 0;
+        boolean ipv4 = !ip.isEmpty();
+        for (int i = 0; i < ip.length() && ipv4; i++) {
+            char c = ip.charAt(i);
+            if (c >= '0' && c <= '9') {
+                part = part * 10 + (c - '0');
+                ipv4 = part <= 255;
+            } else if (c == '.' && dots < 3) {
+                value = (value << 8) | part;
+                part = 0;
+                dots++;
+            } else {
+                ipv4 = false;
+            }
+        }
+        if (ipv4 && dots == 3) {
+            return (value << 8) | part;
+        }
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < ip.length(); i++) {
+            h ^= ip.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h | Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.config.RateLimitProperties;
+import com.example.pim.service.RateLimitService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内令牌桶限流
+ * 每个桶只保存一个“理论到达时间”（GCRA算法，与令牌桶等价），通过CAS更新，没有锁；
+ * 各策略的桶分别保存在ConcurrentHashMap中，已补满的桶定期清理。
+ */
+@Service
+public class RateLimitServiceImpl implements RateLimitService {
+
+    private final RateLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RateLimitServiceImpl(RateLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public long tryAcquire(String policy, String key) {
+        if (!properties.isEnabled() || key == null) {
+            return 0;
+        }
+        Limiter limiter = limiters.computeIfAbsent(policy, this::createLimiter);
+        return limiter == Limiter.UNLIMITED ? 0 : limiter.tryAcquire(key, System.currentTimeMillis());
+    }
+
+    private Limiter createLimiter(String policy) {
+        RateLimitProperties.Policy config = properties.getPolicies().get(policy);
+        if (config == null || config.getRefillPerMinute() <= 0) {
+            return Limiter.UNLIMITED;
+        }
+        Counter allowed = Counter.builder("rate.limit.requests")
+                .tag("policy", policy)
+                .tag("result", "allowed")
+                .register(meterRegistry);
+        Counter rejected = Counter.builder("rate.limit.requests")
+                .tag("policy", policy)
+                .tag("result", "rejected")
+                .register(meterRegistry);
+        return new Limiter(config.getCapacity(), config.getRefillPerMinute(), allowed, rejected);
+    }
+
+    // 清理已经补满的桶，使内存只与近期活跃的键数量相关
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        long now = System.currentTimeMillis();
+        for (Limiter limiter : limiters.values()) {
+            limiter.evictIdle(now);
+        }
+    }
+
+    private static final class Limiter {
+
+        private static final Limiter UNLIMITED = new Limiter(1, 1, null, null);
+
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+        // 每个令牌的补充间隔
+        private final long emissionInterval;
+        // 允许的突发量对应的时间提前量
+        private final long burstTolerance;
+        private final Counter allowed;
+        private final Counter rejected;
+
+        private Limiter(int capacity, int refillPerMinute, Counter allowed, Counter rejected) {
+            this.emissionInterval = Math.max(1, TimeUnit.MINUTES.toMillis(1) / refillPerMinute);
+            this.burstTolerance = emissionInterval * (Math.max(1, capacity) - 1);
+            this.allowed = allowed;
+            this.rejected = rejected;
+        }
+
+        private long tryAcquire(String key, long now) {
+            AtomicLong bucket = buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+            while (true) {
+                long tat = bucket.get();
+                long start = Math.max(tat, now);
+                long wait = start - now - burstTolerance;
+                if (wait > 0) {
+                    rejected.increment();
+                    return wait;
+                }
+                if (bucket.compareAndSet(tat, start + emissionInterval)) {
+                    allowed.increment();
+                    return 0;
+                }
+            }
+        }
+
+        private void evictIdle(long now) {
+            buckets.entrySet().removeIf(entry -> entry.getValue().get() <= now);
+        }
+    }
+}
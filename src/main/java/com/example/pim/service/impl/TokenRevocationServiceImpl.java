@@ -0,0 +1,90 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.RevokedToken;
+import com.example.pim.repository.RevokedTokenRepository;
+import com.example.pim.service.TokenRevocationService;
+import com.example.pim.util.BloomFilter;
+import io.jsonwebtoken.Claims;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+@Service
+public class TokenRevocationServiceImpl implements TokenRevocationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenRevocationServiceImpl.class);
+
+    private final RevokedTokenRepository revokedTokenRepository;
+
+    @Value("${app.tokenRevocation.expectedInsertions:100000}")
+    private int expectedInsertions;
+
+    @Value("${app.tokenRevocation.falsePositiveRate:0.01}")
+    private double falsePositiveRate;
+
+    // 请求热路径上的布隆过滤器，定期从数据库重建以清除已过期令牌并同步其他节点的撤销记录
+    private volatile BloomFilter filter;
+
+    @Autowired
+    public TokenRevocationServiceImpl(RevokedTokenRepository revokedTokenRepository) {
+        this.revokedTokenRepository = revokedTokenRepository;
+    }
+
+    @PostConstruct
+    public void init() {
+        rebuild();
+    }
+
+    @Override
+    public synchronized void revoke(Claims claims) {
+        String tokenId = claims.getId();
+        if (tokenId == null || claims.getExpiration() == null) {
+            return;
+        }
+        RevokedToken revokedToken = new RevokedToken();
+        revokedToken.setTokenId(tokenId);
+        revokedToken.setUsername(claims.getSubject());
+        revokedToken.setExpiresAt(LocalDateTime.ofInstant(claims.getExpiration().toInstant(), ZoneId.systemDefault()));
+        revokedToken.setRevokedAt(LocalDateTime.now());
+        revokedTokenRepository.save(revokedToken);
+        filter.put(tokenId);
+    }
+
+    @Override
+    public boolean isRevoked(Claims claims) {
+        String tokenId = claims.getId();
+        if (tokenId == null || !filter.mightContain(tokenId)) {
+            return false;
+        }
+        // 布隆过滤器可能误判，以数据库记录为准
+        return revokedTokenRepository.existsById(tokenId);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.tokenRevocation.purgeIntervalInMs:60000}")
+    public void purgeExpired() {
+        int removed = revokedTokenRepository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            logger.debug("Purged {} expired revoked tokens", removed);
+        }
+        rebuild();
+    }
+
+    // 与revoke互斥，避免重建期间新增的撤销记录丢失
+    private synchronized void rebuild() {
+        List<String> activeTokenIds = revokedTokenRepository.findActiveTokenIds(LocalDateTime.now());
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedInsertions, activeTokenIds.size() * 2), falsePositiveRate);
+        for (String tokenId : activeTokenIds) {
+            rebuilt.put(tokenId);
+        }
+        filter = rebuilt;
+    }
+}
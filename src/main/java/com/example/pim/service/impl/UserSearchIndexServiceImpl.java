@@ -0,0 +1,233 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.entity.User;
+import com.example.pim.repository.UserRepository;
+import com.example.pim.service.UserSearchIndexService;
+import com.example.pim.util.TrigramIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 用户子串搜索的内存索引
+ * 应用启动完成后在后台线程中读取全部用户并行构建三元组索引，构建完成前的搜索由数据库完成，
+ * 构建期间发生的用户变更暂存后在构建完成时补上；之后每次新增、修改、删除用户时增量更新。
+ * 搜索在索引中得到按ID升序的全部匹配用户，只按ID查询当前页的用户。
+ */
+@Service
+public class UserSearchIndexServiceImpl implements UserSearchIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSearchIndexServiceImpl.class);
+
+    private static final String SELECT_SQL = "SELECT id, username, full_name, email FROM users ORDER BY id";
+
+    private static final Sort ID_ASC = Sort.by(Sort.Direction.ASC, "id");
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int buildThreads;
+    private final int fetchSize;
+    private final Object buildLock = new Object();
+
+    // 构建期间的变更，值为null表示删除；构建结束后置为null
+    private Map<Integer, String> pendingUpdates;
+    private volatile TrigramIndex index;
+
+    @Autowired
+    public UserSearchIndexServiceImpl(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.userSearch.index.enabled:true}") boolean enabled,
+                                      @Value("${app.userSearch.index.buildThreads:0}") int buildThreads,
+                                      @Value("${app.userSearch.index.fetchSize:1000}") int fetchSize) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        // 未配置时使用全部CPU
+        this.buildThreads = buildThreads > 0 ? buildThreads : Runtime.getRuntime().availableProcessors();
+        this.fetchSize = Math.max(1, fetchSize);
+        this.pendingUpdates = enabled ? new LinkedHashMap<>() : null;
+        Gauge.builder("user.search.index.documents", this,
+                        s -> s.index != null ? s.index.getDocumentCount() : 0)
+                .description("用户搜索索引中的用户数量")
+                .register(meterRegistry);
+        Gauge.builder("user.search.index.postings", this,
+                        s -> s.index != null ? s.index.getPostingCount() : 0)
+                .description("用户搜索索引倒排表的元素总数")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startBuild() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::build, "user-search-index-build");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void build() {
+        long start = System.nanoTime();
+        try {
+            int[][] ids = {new int[1024]};
+            List<String> texts = new ArrayList<>();
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SELECT_SQL,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(fetchSize);
+                return ps;
+            }, rs -> {
+                int count = texts.size();
+                if (count == ids[0].length) {
+                    ids[0] = Arrays.copyOf(ids[0], count + (count >> 1));
+                }
+                ids[0][count] = toIndexId(rs.getLong(1));
+                texts.add(searchText(rs.getString(2), rs.getString(3), rs.getString(4)));
+            });
+            TrigramIndex built = TrigramIndex.build(Arrays.copyOf(ids[0], texts.size()),
+                    texts.toArray(new String[0]), buildThreads);
+            synchronized (buildLock) {
+                if (pendingUpdates == null) {
+                    // 构建期间已停用
+                    return;
+                }
+                pendingUpdates.forEach((id, text) -> {
+                    if (text != null) {
+                        built.put(id, text);
+                    } else {
+                        built.remove(id);
+                    }
+                });
+                pendingUpdates = null;
+                index = built;
+            }
+            logger.info("Built user search index of {} users with {} postings in {} ms", built.getDocumentCount(),
+                    built.getPostingCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            logger.error("Failed to build user search index, searching users in database", e);
+            disable();
+        }
+    }
+
+    @Override
+    public void index(User user) {
+        update(user.getId(), searchText(user.getUsername(), user.getFullName(), user.getEmail()));
+    }
+
+    @Override
+    public void remove(Long userId) {
+        update(userId, null);
+    }
+
+    private void update(Long userId, String text) {
+        if (userId == null) {
+            return;
+        }
+        int id;
+        try {
+            id = toIndexId(userId);
+        } catch (IllegalStateException e) {
+            logger.warn("User id {} out of search index range, searching users in database", userId);
+            disable();
+            return;
+        }
+        TrigramIndex current = index;
+        if (current == null) {
+            synchronized (buildLock) {
+                if (pendingUpdates != null) {
+                    pendingUpdates.put(id, text);
+                    return;
+                }
+                current = index;
+            }
+            if (current == null) {
+                return;
+            }
+        }
+        if (text != null) {
+            current.put(id, text);
+        } else {
+            current.remove(id);
+        }
+    }
+
+    @Override
+    public Page<User> search(String keyword, Pageable pageable) {
+        TrigramIndex current = index;
+        if (current == null || keyword.length() < TrigramIndex.GRAM || pageable.isUnpaged()
+                || !(pageable.getSort().isUnsorted() || pageable.getSort().equals(ID_ASC))) {
+            return null;
+        }
+        int[] ids = current.search(keyword);
+        if (pageable.getOffset() >= ids.length) {
+            return new PageImpl<>(Collections.emptyList(), pageable, ids.length);
+        }
+        int from = (int) pageable.getOffset();
+        int to = Math.min(ids.length, from + pageable.getPageSize());
+        List<Long> pageIds = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            pageIds.add((long) ids[i]);
+        }
+        Map<Long, User> users = new HashMap<>();
+        for (User user : userRepository.findAllById(pageIds)) {
+            users.put(user.getId(), user);
+        }
+        List<User> content = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            User user = users.get(id);
+            // 索引更新前被并发删除的用户
+            if (user != null) {
+                content.add(user);
+            }
+        }
+        return new PageImpl<>(content, pageable, ids.length);
+    }
+
+    // 索引无法继续使用时停用，搜索退回到数据库
+    private void disable() {
+        synchronized (buildLock) {
+            pendingUpdates = null;
+            index = null;
+        }
+    }
+
+    private static int toIndexId(long userId) {
+        if (userId < 0 || userId > Integer.MAX_VALUE) {
+            throw new IllegalStateException("用户ID超出索引范围: " + userId);
+        }
+        return (int) userId;
+    }
+
+    // 与User.searchKey生成列相同：小写的用户名、姓名、邮箱以分隔符拼接
+    private static String searchText(String username, String fullName, String email) {
+        return lower(username) + SEARCH_KEY_SEPARATOR + lower(fullName) + SEARCH_KEY_SEPARATOR + lower(email);
+    }
+
+    private static String lower(String value) {
+        return value != null ? value.toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.pim.service.impl;
+
+import com.example.pim.repository.UserRepository;
+import com.example.pim.service.UserSecurityVersionService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class UserSecurityVersionServiceImpl implements UserSecurityVersionService {
+
+    // 用户不存在（已删除）时使用的版本号，不会与任何令牌匹配
+    private static final int DELETED = -1;
+
+    private final UserRepository userRepository;
+    private final ConcurrentHashMap<Long, VersionEntry> versions = new ConcurrentHashMap<>();
+
+    // 本地缓存的版本号在此时间后重新从数据库读取，使其他节点上的变更也能生效
+    @Value("${app.securityVersionTtlInMs:30000}")
+    private long ttlInMs;
+
+    @Value("${app.securityVersionMaxEntries:100000}")
+    private int maxEntries;
+
+    @Autowired
+    public UserSecurityVersionServiceImpl(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    public boolean isCurrent(Long userId, int version) {
+        long now = System.currentTimeMillis();
+        VersionEntry entry = versions.get(userId);
+        if (entry == null || entry.loadedAt + ttlInMs <= now) {
+            int current = userRepository.findSecurityVersionById(userId).orElse(DELETED);
+            entry = new VersionEntry(current, now);
+            if (versions.size() >= maxEntries) {
+                versions.clear();
+            }
+            versions.put(userId, entry);
+        }
+        return entry.version != DELETED && entry.version == version;
+    }
+
+    @Override
+    public void invalidate(Long userId) {
+        if (userId != null) {
+            versions.remove(userId);
+        }
+    }
+
+    private static final class VersionEntry {
+        private final int version;
+        private final long loadedAt;
+
+        private VersionEntry(int version, long loadedAt) {
+            this.version = version;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
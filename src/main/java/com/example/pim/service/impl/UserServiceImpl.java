@@ -2,6 +2,10 @@ package com.example.pim.service.impl;
 
 import com.example.pim.entity.User;
 import com.example.pim.repository.UserRepository;
+import com.example.pim.service.LastLoginService;
+import com.example.pim.service.LoginAttemptService;
+import com.example.pim.service.UserSearchIndexService;
+import com.example.pim.service.UserSecurityVersionService;
 import com.example.pim.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -12,13 +16,20 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserSecurityVersionService userSecurityVersionService;
+    private final CustomUserDetailsService userDetailsService;
+    private final LoginAttemptService loginAttemptService;
+    private final LastLoginService lastLoginService;
+    private final UserSearchIndexService userSearchIndexService;
     
     // 最大登录失败次数
     private static final int MAX_LOGIN_ATTEMPTS = 5;
@@ -26,9 +37,19 @@ public class UserServiceImpl implements UserService {
     private static final int ACCOUNT_LOCK_MINUTES = 10;
 
     @Autowired
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder,
+                           UserSecurityVersionService userSecurityVersionService,
+                           CustomUserDetailsService userDetailsService,
+                           LoginAttemptService loginAttemptService,
+                           LastLoginService lastLoginService,
+                           UserSearchIndexService userSearchIndexService) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userSecurityVersionService = userSecurityVersionService;
+        this.userDetailsService = userDetailsService;
+        this.loginAttemptService = loginAttemptService;
+        this.lastLoginService = lastLoginService;
+        this.userSearchIndexService = userSearchIndexService;
     }
 
     @Override
@@ -49,7 +70,9 @@ public class UserServiceImpl implements UserService {
         user.setCreatedAt(LocalDateTime.now());
         user.setUpdatedAt(LocalDateTime.now());
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userSearchIndexService.index(savedUser);
+        return savedUser;
     }
 
     @Override
@@ -69,53 +92,112 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public User authenticate(String username, String password) {
+        return authenticate(username, password, null, false);
+    }
+
+    @Override
+    public User login(String username, String password, String ipAddress) {
+        return authenticate(username, password, ipAddress, true);
+    }
+
+    /**
+     * 校验用户名密码
+     * 只查询一次用户；失败次数由内存中的LoginAttemptService按用户和IP统计，
+     * 只有锁定、解锁等状态变化才同步回写数据库，且最多回写一次；最后登录时间由LastLoginService延迟批量写入
+     */
+    private User authenticate(String username, String password, String ipAddress, boolean recordLogin) {
+        // 来源IP失败次数过多时直接拒绝，不查询数据库也不计算密码哈希
+        long ipBlockRemaining = loginAttemptService.getIpBlockRemaining(ipAddress);
+        if (ipBlockRemaining > 0) {
+            long minutesLeft = TimeUnit.MILLISECONDS.toMinutes(ipBlockRemaining + TimeUnit.MINUTES.toMillis(1) - 1);
+            throw new RuntimeException("登录失败次数过多，请" + minutesLeft + "分钟后再试");
+        }
+
         Optional<User> userOptional = userRepository.findByUsername(username);
+        if (!userOptional.isPresent()) {
+            loginAttemptService.recordIpFailure(ipAddress);
+            throw new RuntimeException("用户名或密码错误");
+        }
+        User user = userOptional.get();
+        LocalDateTime now = LocalDateTime.now();
+        boolean changed = false;
 
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
-            
-            // 检查账户是否已锁定
-            if (isAccountLocked(username)) {
-                // 检查锁定时间是否已过
-                unlockAccountIfExpired(user.getId());
-                // 如果仍然锁定，抛出异常
-                if (user.getAccountLocked()) {
-                    long minutesLeft = ChronoUnit.MINUTES.between(LocalDateTime.now(), 
-                            user.getLockTime().plusMinutes(ACCOUNT_LOCK_MINUTES));
-                    throw new RuntimeException("账户已被锁定，请" + minutesLeft + "分钟后再试");
-                }
+        // 检查账户是否已锁定
+        if (Boolean.TRUE.equals(user.getAccountLocked()) && user.getLockTime() != null) {
+            LocalDateTime lockExpiryTime = user.getLockTime().plusMinutes(ACCOUNT_LOCK_MINUTES);
+            if (!now.isAfter(lockExpiryTime)) {
+                long minutesLeft = ChronoUnit.MINUTES.between(now, lockExpiryTime);
+                throw new RuntimeException("账户已被锁定，请" + minutesLeft + "分钟后再试");
+            }
+            // 锁定时间已过，解锁账户并重置失败次数
+            user.setAccountLocked(false);
+            user.setLoginAttempts(0);
+            user.setLockTime(null);
+            changed = true;
+        }
+
+        // 验证密码
+        if (passwordEncoder.matches(password, user.getPassword()) && user.getEnabled()) {
+            // 登录成功，重置失败次数
+            loginAttemptService.resetUser(user.getId());
+            // 旧的MD5密码在登录成功后重新哈希
+            if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+                user.setPassword(passwordEncoder.encode(password));
+                userRepository.updatePasswordHash(user.getId(), user.getPassword());
+                userDetailsService.evictUser(user.getUsername());
+            }
+            if (user.getLoginAttempts() != null && user.getLoginAttempts() != 0) {
+                user.setLoginAttempts(0);
+                changed = true;
             }
-            
-            // 验证密码
-            if (passwordEncoder.matches(password, user.getPassword()) && user.getEnabled()) {
-                // 登录成功，重置失败次数
-                resetLoginAttempts(user.getId());
-                return user;
-            } else {
-                // 登录失败，增加失败次数
-                incrementLoginAttempts(username);
-                throw new RuntimeException("用户名或密码错误");
+            if (recordLogin) {
+                // 最后登录时间延迟合并写入，不在登录请求中单独UPDATE
+                user.setLastLogin(now);
+                lastLoginService.record(user.getId(), now);
             }
+            if (changed) {
+                saveLoginState(user);
+            }
+            return user;
         }
 
+        // 登录失败，增加失败次数
+        loginAttemptService.recordIpFailure(ipAddress);
+        if (!recordUserFailure(user, now) && changed) {
+            saveLoginState(user);
+        }
         throw new RuntimeException("用户名或密码错误");
     }
+
+    /**
+     * 在内存中记录一次用户登录失败，达到阈值时锁定账户并写回数据库
+     * 返回是否已写回数据库
+     */
+    private boolean recordUserFailure(User user, LocalDateTime now) {
+        int attempts = loginAttemptService.recordUserFailure(user.getId());
+        if (attempts < MAX_LOGIN_ATTEMPTS) {
+            return false;
+        }
+        // 失败次数达到阈值，锁定账户
+        user.setLoginAttempts(attempts);
+        user.setAccountLocked(true);
+        user.setLockTime(now);
+        userRepository.lockForLoginFailures(user.getId(), attempts, now);
+        loginAttemptService.resetUser(user.getId());
+        userSecurityVersionService.invalidate(user.getId());
+        userDetailsService.evictUser(user.getUsername());
+        return true;
+    }
+
+    private void saveLoginState(User user) {
+        userRepository.updateLoginState(user.getId(), user.getLoginAttempts(), user.getAccountLocked(),
+                user.getLockTime(), user.getLastLogin());
+    }
     
     @Override
     public void incrementLoginAttempts(String username) {
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
-            int attempts = user.getLoginAttempts() + 1;
-            user.setLoginAttempts(attempts);
-            
-            // 如果失败次数达到阈值，锁定账户
-            if (attempts >= MAX_LOGIN_ATTEMPTS) {
-                lockAccount(user.getId());
-            }
-            
-            userRepository.save(user);
-        }
+        userRepository.findByUsername(username)
+                .ifPresent(user -> recordUserFailure(user, LocalDateTime.now()));
     }
     
     @Override
@@ -127,6 +209,8 @@ public class UserServiceImpl implements UserService {
             user.setAccountLocked(false);
             user.setLockTime(null);
             userRepository.save(user);
+            loginAttemptService.resetUser(userId);
+            userDetailsService.evictUser(user.getUsername());
         }
     }
     
@@ -137,7 +221,10 @@ public class UserServiceImpl implements UserService {
             User user = userOptional.get();
             user.setAccountLocked(true);
             user.setLockTime(LocalDateTime.now());
+            incrementSecurityVersion(user);
             userRepository.save(user);
+            userSecurityVersionService.invalidate(userId);
+            userDetailsService.evictUser(user.getUsername());
         }
     }
     
@@ -178,6 +265,14 @@ public class UserServiceImpl implements UserService {
         }
     }
 
+    @Override
+    public void forceLogout(Long userId) {
+        User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("用户不存在"));
+        incrementSecurityVersion(user);
+        userRepository.save(user);
+        userSecurityVersionService.invalidate(userId);
+    }
+
     @Override
     public void createVerificationToken(User user, String token) {
         user.setVerificationToken(token);
@@ -214,8 +309,10 @@ public class UserServiceImpl implements UserService {
         Optional<User> userOptional = userRepository.findById(userId);
         if (userOptional.isPresent()) {
             User user = userOptional.get();
-            user.setLastLogin(LocalDateTime.now());
-            return userRepository.save(user);
+            LocalDateTime now = LocalDateTime.now();
+            user.setLastLogin(now);
+            lastLoginService.record(userId, now);
+            return user;
         }
         throw new RuntimeException("用户不存在");
     }
@@ -225,7 +322,10 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(userId).orElseThrow(() -> new RuntimeException("用户不存在"));
         user.setPassword(passwordEncoder.encode(newPassword));
         user.setUpdatedAt(LocalDateTime.now());
+        incrementSecurityVersion(user);
         userRepository.save(user);
+        userSecurityVersionService.invalidate(userId);
+        userDetailsService.evictUser(user.getUsername());
     }
 
     @Override
@@ -243,24 +343,30 @@ public class UserServiceImpl implements UserService {
         if (keyword == null || keyword.trim().isEmpty()) {
             return getUsersPage(pageable);
         }
-        // 实际项目中应该在UserRepository中添加search方法，这里为了演示简单处理
-        // 注意：这不是一个高效的实现，只是为了演示功能
-        List<User> allUsers = userRepository.findAll();
-        List<User> filteredUsers = allUsers.stream()
-                .filter(user -> user.getUsername().toLowerCase().contains(keyword.toLowerCase()) ||
-                        user.getFullName().toLowerCase().contains(keyword.toLowerCase()) ||
-                        user.getEmail().toLowerCase().contains(keyword.toLowerCase()))
-                .toList();
-        
-        // 手动实现分页（实际项目中应该使用数据库查询）
-        int start = Math.min((int) pageable.getOffset(), filteredUsers.size());
-        int end = Math.min(start + pageable.getPageSize(), filteredUsers.size());
-        
-        return new org.springframework.data.domain.PageImpl<>(
-                filteredUsers.subList(start, end),
-                pageable,
-                filteredUsers.size()
-        );
+        String normalized = keyword.trim().toLowerCase(Locale.ROOT);
+        if (normalized.indexOf(UserSearchIndexService.SEARCH_KEY_SEPARATOR) >= 0) {
+            // 分隔符不会出现在任何字段中
+            return Page.empty(pageable);
+        }
+        // 优先使用内存索引，索引无法回答时由数据库搜索
+        Page<User> page = userSearchIndexService.search(normalized, pageable);
+        if (page != null) {
+            return page;
+        }
+        return userRepository.search("%" + escapeLike(normalized) + "%", pageable);
+    }
+
+    // 转义LIKE通配符，关键字按字面匹配
+    private static String escapeLike(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '!' || c == '%' || c == '_') {
+                sb.append('!');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
     }
 
     @Override
@@ -273,6 +379,7 @@ public class UserServiceImpl implements UserService {
     public User updateUser(Long userId, User userDetails) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
+        String originalUsername = user.getUsername();
 
         // 更新用户名（如果提供了新用户名）
         if (userDetails.getUsername() != null && !userDetails.getUsername().trim().isEmpty()) {
@@ -283,6 +390,8 @@ public class UserServiceImpl implements UserService {
                     throw new RuntimeException("用户名已被使用");
                 }
                 user.setUsername(userDetails.getUsername());
+                // 令牌中携带用户名，用户名变更后旧令牌失效
+                incrementSecurityVersion(user);
             }
         }
 
@@ -307,13 +416,22 @@ public class UserServiceImpl implements UserService {
             user.setGender(userDetails.getGender());
         }
         if (userDetails.getEnabled() != null) {
+            // 禁用用户时使其已签发的令牌失效
+            if (!Boolean.FALSE.equals(user.getEnabled()) && !userDetails.getEnabled()) {
+                incrementSecurityVersion(user);
+            }
             user.setEnabled(userDetails.getEnabled());
         }
         
         // 更新时间戳
         user.setUpdatedAt(LocalDateTime.now());
 
-        return userRepository.save(user);
+        User savedUser = userRepository.save(user);
+        userSearchIndexService.index(savedUser);
+        userSecurityVersionService.invalidate(userId);
+        userDetailsService.evictUser(originalUsername);
+        userDetailsService.evictUser(savedUser.getUsername());
+        return savedUser;
     }
 
     @Override
@@ -321,5 +439,14 @@ public class UserServiceImpl implements UserService {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
         userRepository.delete(user);
+        userSearchIndexService.remove(userId);
+        userSecurityVersionService.invalidate(userId);
+        userDetailsService.evictUser(user.getUsername());
+    }
+
+    // 递增用户安全版本号，使已签发的令牌失效
+    private void incrementSecurityVersion(User user) {
+        int version = user.getSecurityVersion() != null ? user.getSecurityVersion() : 0;
+        user.setSecurityVersion(version + 1);
     }
 }
@@ -0,0 +1,956 @@
+package com.example.pim.util;
+
+import com.example.pim.entity.AdminOperationLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 操作日志冷归档
+ * 每个段文件保存按(操作时间, ID)排序的一批日志，按列分块存储，每列单独用Deflate压缩：
+ * 字符串列使用段内字典编码，ID和时间列保存与上一行的差值，数值统一用变长整数编码。
+ * 文件头记录所属分区的时间范围、段内最小/最大时间和各列块的位置，启动时只读取文件头；
+ * 查询时先按时间范围跳过整个段，再只解压用到的列，筛选值不在字典中的段不再读取其他列。段文件写入后不再修改。
+ * 段有引用计数：段列表持有一个引用，每次读取持有一个引用；段被删除或替换时只释放段列表的引用，
+ * 最后一个读取结束后才删除文件，已释放的段不再被新的读取打开。
+ *
+ * 文件头：int magic, int 列数, int 行数, long 分区起始时间, long 分区结束时间, long 最小时间, long 最大时间（均为微秒），
+ * long 最大ID，之后每列一项：long 偏移, int 压缩后长度, int 原始长度。
+ */
+public class AuditArchive {
+
+    private static final String SEGMENT_SUFFIX = ".arc";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAGIC = 0x41524333;
+
+    private static final int ID = 0;
+    private static final int ADMIN_ID = 1;
+    private static final int ADMIN_USERNAME = 2;
+    private static final int OPERATION_TYPE = 3;
+    private static final int OBJECT_TYPE = 4;
+    private static final int OBJECT_ID = 5;
+    private static final int OBJECT_NAME = 6;
+    private static final int RESULT = 7;
+    private static final int OPERATION_TIME = 8;
+    private static final int IP_ADDRESS = 9;
+    private static final int OCCURRENCES = 10;
+    private static final int LAST_OPERATION_TIME = 11;
+    private static final int COLUMN_COUNT = 12;
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES * 5
+            + COLUMN_COUNT * (Long.BYTES + Integer.BYTES * 2);
+
+    private static final int COUNT_CACHE_SIZE = 256;
+
+    private static final Comparator<Segment> TIME_ORDER = Comparator.comparingLong((Segment s) -> s.minTime)
+            .thenComparingLong(s -> s.maxTime)
+            .thenComparing(s -> s.file.getFileName().toString());
+
+    private final Path directory;
+    private final int segmentRows;
+
+    // 按时间升序排列，整体替换，读取时无需加锁
+    private volatile List<Segment> segments = Collections.emptyList();
+    // 统计结果只对计算时的段列表有效，段列表被替换后整体清空
+    private final Map<String, Long> countCache = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > COUNT_CACHE_SIZE;
+        }
+    };
+    private List<Segment> countCacheSegments = Collections.emptyList();
+
+    public AuditArchive(Path directory, int segmentRows) throws IOException {
+        this.directory = directory;
+        this.segmentRows = Math.max(1, segmentRows);
+        Files.createDirectories(directory);
+        load();
+    }
+
+    private void load() throws IOException {
+        List<Segment> loaded = new ArrayList<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) stream::iterator) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    // 归档中途停止留下的临时文件，对应的分区仍在数据库中，下次归档时重新生成
+                    Files.deleteIfExists(file);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    loaded.add(Segment.open(file));
+                }
+            }
+        }
+        loaded.sort(TIME_ORDER);
+        segments = Collections.unmodifiableList(loaded);
+    }
+
+    /**
+     * 为一个分区创建归档写入器，日志须按(操作时间, ID)升序追加
+     * 完成后替换该分区此前的归档段
+     */
+    public Writer writer(String name, LocalDateTime rangeStart, LocalDateTime rangeEnd) {
+        return new Writer(name, toMicros(rangeStart), toMicros(rangeEnd));
+    }
+
+    /**
+     * 已归档数据覆盖到的时间（各段所属分区的最大结束时间），没有归档时返回null
+     */
+    public LocalDateTime getArchivedBefore() {
+        long max = Long.MIN_VALUE;
+        for (Segment segment : segments) {
+            max = Math.max(max, segment.rangeEnd);
+        }
+        return max == Long.MIN_VALUE ? null : fromMicros(max);
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 归档中日志的最大ID，没有归档时返回0
+     */
+    public long getMaxId() {
+        long max = 0;
+        for (Segment segment : segments) {
+            max = Math.max(max, segment.maxId);
+        }
+        return max;
+    }
+
+    public long getDiskUsage() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.size;
+        }
+        return bytes;
+    }
+
+    /**
+     * 删除所属分区在指定时间之前结束的段，返回被删除数据覆盖到的时间，没有删除时返回null
+     */
+    public synchronized LocalDateTime deleteBefore(LocalDateTime time) {
+        long limit = toMicros(time);
+        List<Segment> kept = new ArrayList<>();
+        List<Segment> expired = new ArrayList<>();
+        for (Segment segment : segments) {
+            (segment.rangeEnd <= limit ? expired : kept).add(segment);
+        }
+        if (expired.isEmpty()) {
+            return null;
+        }
+        segments = Collections.unmodifiableList(kept);
+        long deletedBefore = Long.MIN_VALUE;
+        for (Segment segment : expired) {
+            segment.release();
+            deletedBefore = Math.max(deletedBefore, segment.rangeEnd);
+        }
+        return fromMicros(deletedBefore);
+    }
+
+    /**
+     * 统计满足条件的日志数量，最多计数到limit
+     * 没有筛选条件且整个段都在时间范围内时直接使用文件头中的行数；准确的结果按段列表缓存
+     */
+    public long count(Query query, long limit) {
+        List<Segment> snapshot = segments;
+        String key = query.key();
+        synchronized (countCache) {
+            if (countCacheSegments != snapshot) {
+                countCache.clear();
+                countCacheSegments = snapshot;
+            }
+            Long cached = countCache.get(key);
+            if (cached != null) {
+                return Math.min(cached, limit);
+            }
+        }
+        long count = 0;
+        for (Segment segment : snapshot) {
+            if (count >= limit) {
+                break;
+            }
+            if (!segment.overlaps(query)) {
+                continue;
+            }
+            if (segment.coveredBy(query)) {
+                count += segment.rows;
+                continue;
+            }
+            try (SegmentData data = SegmentData.open(segment)) {
+                if (data == null) {
+                    continue;
+                }
+                Matcher matcher = new Matcher(query, data);
+                if (matcher.empty) {
+                    continue;
+                }
+                for (int row = 0; row < segment.rows && count < limit; row++) {
+                    if (matcher.matches(row)) {
+                        count++;
+                    }
+                }
+            }
+        }
+        if (count < limit) {
+            synchronized (countCache) {
+                if (countCacheSegments == snapshot) {
+                    countCache.put(key, count);
+                }
+            }
+        }
+        return Math.min(count, limit);
+    }
+
+    /**
+     * 按操作类型统计满足条件的日志数量
+     */
+    public Map<String, Long> countByOperationType(Query query) {
+        Map<String, Long> counts = new HashMap<>();
+        for (Segment segment : segments) {
+            if (!segment.overlaps(query)) {
+                continue;
+            }
+            try (SegmentData data = SegmentData.open(segment)) {
+                if (data == null) {
+                    continue;
+                }
+                Matcher matcher = new Matcher(query, data);
+                if (matcher.empty) {
+                    continue;
+                }
+                Dictionary types = data.dictionary(OPERATION_TYPE);
+                long[] occurrences = data.values(OCCURRENCES);
+                long[] byCode = new long[types.values.length + 1];
+                for (int row = 0; row < segment.rows; row++) {
+                    if (matcher.matches(row)) {
+                        // 合并记录按其代表的操作次数计数
+                        byCode[types.codes[row]] += occurrences[row];
+                    }
+                }
+                for (int code = 1; code < byCode.length; code++) {
+                    if (byCode[code] > 0) {
+                        counts.merge(types.values[code - 1], byCode[code], Long::sum);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * 按(操作时间, ID)顺序逐条访问满足条件的日志，visitor返回false时停止
+     */
+    public void scan(Query query, boolean ascending, Predicate<AdminOperationLog> visitor) {
+        visit(query, ascending, 0, visitor);
+    }
+
+    /**
+     * 按(操作时间, ID)顺序跳过offset条后取limit条满足条件的日志，跳过的行不会还原为对象
+     */
+    public List<AdminOperationLog> find(Query query, boolean ascending, long offset, int limit) {
+        List<AdminOperationLog> result = new ArrayList<>(Math.min(Math.max(limit, 0), 1024));
+        if (limit > 0) {
+            visit(query, ascending, offset, log -> {
+                result.add(log);
+                return result.size() < limit;
+            });
+        }
+        return result;
+    }
+
+    private void visit(Query query, boolean ascending, long skip, Predicate<AdminOperationLog> visitor) {
+        List<Segment> snapshot = segments;
+        for (int i = 0; i < snapshot.size(); i++) {
+            Segment segment = snapshot.get(ascending ? i : snapshot.size() - 1 - i);
+            if (!segment.overlaps(query)) {
+                continue;
+            }
+            try (SegmentData data = SegmentData.open(segment)) {
+                if (data == null) {
+                    continue;
+                }
+                Matcher matcher = new Matcher(query, data);
+                if (matcher.empty) {
+                    continue;
+                }
+                for (int j = 0; j < segment.rows; j++) {
+                    int row = ascending ? j : segment.rows - 1 - j;
+                    if (!matcher.matches(row)) {
+                        continue;
+                    }
+                    if (skip > 0) {
+                        skip--;
+                    } else if (!visitor.test(data.materialize(row))) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void replace(String name, List<Segment> added) {
+        String prefix = name + "-";
+        List<Segment> next = new ArrayList<>(added);
+        List<Segment> replaced = new ArrayList<>();
+        for (Segment segment : segments) {
+            (segment.file.getFileName().toString().startsWith(prefix) ? replaced : next).add(segment);
+        }
+        next.sort(TIME_ORDER);
+        segments = Collections.unmodifiableList(next);
+        for (Segment segment : replaced) {
+            segment.release();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + time.getNano() / 1000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    /**
+     * 查询条件：管理员用户名前缀匹配，操作类型、对象类型、操作结果等值匹配，时间范围两端均包含
+     */
+    public static final class Query {
+        private String adminUsername;
+        private String operationType;
+        private String objectType;
+        private String result;
+        private long startTime = Long.MIN_VALUE;
+        private long endTime = Long.MAX_VALUE;
+        private boolean hasCursor;
+        private long cursorTime;
+        private long cursorId;
+
+        public static Query of(String adminUsername, String operationType, String objectType,
+                               LocalDateTime startTime, LocalDateTime endTime, Boolean success) {
+            Query query = new Query();
+            query.adminUsername = trimToNull(adminUsername);
+            query.operationType = trimToNull(operationType);
+            query.objectType = trimToNull(objectType);
+            query.result = success == null ? null : success ? "SUCCESS" : "FAILURE";
+            if (startTime != null) {
+                query.startTime = toMicros(startTime);
+            }
+            if (endTime != null) {
+                query.endTime = toMicros(endTime);
+            }
+            return query;
+        }
+
+        /**
+         * 只保留(操作时间, ID)严格早于游标的日志
+         */
+        public Query before(LocalDateTime cursorTime, Long cursorId) {
+            if (cursorTime != null) {
+                hasCursor = true;
+                this.cursorTime = toMicros(cursorTime);
+                this.cursorId = cursorId != null ? cursorId : Long.MAX_VALUE;
+            }
+            return this;
+        }
+
+        private boolean hasFilters() {
+            return adminUsername != null || operationType != null || objectType != null || result != null
+                    || hasCursor;
+        }
+
+        private String key() {
+            return adminUsername + "\u0000" + operationType + "\u0000" + objectType + "\u0000" + result + "\u0000"
+                    + startTime + "\u0000" + endTime + "\u0000" + (hasCursor ? cursorTime + ":" + cursorId : "");
+        }
+
+        private static String trimToNull(String value) {
+            return value == null || value.trim().isEmpty() ? null : value.trim();
+        }
+    }
+
+    /**
+     * 归档写入器，每满segmentRows行生成一个段文件
+     */
+    public final class Writer {
+        private final String name;
+        private final long rangeStart;
+        private final long rangeEnd;
+        private final List<Segment> written = new ArrayList<>();
+        private final String generation = Long.toString(System.currentTimeMillis());
+
+        private int rows;
+        private long[] ids;
+        private long[] adminIds;
+        private long[] objectIds;
+        private long[] times;
+        private long[] occurrences;
+        private long[] lastTimes;
+        // 按列下标存放字典，非字典列为null
+        private final List<Map<String, Integer>> dictionaries;
+        private final int[][] codes;
+
+        private Writer(String name, long rangeStart, long rangeEnd) {
+            this.name = name;
+            this.rangeStart = rangeStart;
+            this.rangeEnd = rangeEnd;
+            int capacity = Math.min(segmentRows, 4096);
+            this.ids = new long[capacity];
+            this.adminIds = new long[capacity];
+            this.objectIds = new long[capacity];
+            this.times = new long[capacity];
+            this.occurrences = new long[capacity];
+            this.lastTimes = new long[capacity];
+            this.dictionaries = new ArrayList<>(Collections.nCopies(COLUMN_COUNT, null));
+            this.codes = new int[COLUMN_COUNT][];
+            for (int column : new int[]{ADMIN_USERNAME, OPERATION_TYPE, OBJECT_TYPE, OBJECT_NAME, RESULT, IP_ADDRESS}) {
+                dictionaries.set(column, new LinkedHashMap<>());
+                codes[column] = new int[capacity];
+            }
+        }
+
+        public void append(AdminOperationLog log) throws IOException {
+            if (rows == ids.length) {
+                grow(Math.min(segmentRows, rows * 2));
+            }
+            ids[rows] = log.getId();
+            adminIds[rows] = encodeNullable(log.getAdminId());
+            objectIds[rows] = encodeNullable(log.getObjectId());
+            times[rows] = toMicros(log.getOperationTime());
+            occurrences[rows] = log.getOccurrences() != null ? log.getOccurrences() : 1;
+            // 最后一次时间保存为与第一次时间的差值加1，0表示null
+            lastTimes[rows] = log.getLastOperationTime() != null
+                    ? toMicros(log.getLastOperationTime()) - times[rows] + 1 : 0;
+            code(ADMIN_USERNAME, log.getAdminUsername());
+            code(OPERATION_TYPE, log.getOperationType());
+            code(OBJECT_TYPE, log.getObjectType());
+            code(OBJECT_NAME, log.getObjectName());
+            code(RESULT, log.getResult());
+            code(IP_ADDRESS, log.getIpAddress());
+            rows++;
+            if (rows == segmentRows) {
+                flushSegment();
+            }
+        }
+
+        /**
+         * 写完剩余的日志并发布本次生成的段，返回段文件数量
+         */
+        public int finish() throws IOException {
+            if (rows > 0) {
+                flushSegment();
+            }
+            List<Segment> published = new ArrayList<>(written.size());
+            for (Segment segment : written) {
+                Path target = segment.file.resolveSibling(segment.file.getFileName().toString()
+                        .replace(TEMP_SUFFIX, SEGMENT_SUFFIX));
+                Files.move(segment.file, target, StandardCopyOption.ATOMIC_MOVE);
+                published.add(Segment.open(target));
+            }
+            replace(name, published);
+            return published.size();
+        }
+
+        private void code(int column, String value) {
+            Map<String, Integer> dictionary = dictionaries.get(column);
+            // 0表示null，字典中第k个取值的编码为k+1
+            codes[column][rows] = value == null ? 0 : dictionary.computeIfAbsent(value, v -> dictionary.size() + 1);
+        }
+
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(ids, capacity);
+            adminIds = Arrays.copyOf(adminIds, capacity);
+            objectIds = Arrays.copyOf(objectIds, capacity);
+            times = Arrays.copyOf(times, capacity);
+            occurrences = Arrays.copyOf(occurrences, capacity);
+            lastTimes = Arrays.copyOf(lastTimes, capacity);
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                if (codes[column] != null) {
+                    codes[column] = Arrays.copyOf(codes[column], capacity);
+                }
+            }
+        }
+
+        private void flushSegment() throws IOException {
+            byte[][] raw = new byte[COLUMN_COUNT][];
+            raw[ID] = encodeDeltas(ids, rows);
+            raw[ADMIN_ID] = encodeValues(adminIds, rows);
+            raw[OBJECT_ID] = encodeValues(objectIds, rows);
+            raw[OPERATION_TIME] = encodeDeltas(times, rows);
+            raw[OCCURRENCES] = encodeValues(occurrences, rows);
+            raw[LAST_OPERATION_TIME] = encodeValues(lastTimes, rows);
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                if (dictionaries.get(column) != null) {
+                    raw[column] = encodeDictionary(dictionaries.get(column), codes[column], rows);
+                }
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            long maxId = Long.MIN_VALUE;
+            for (int row = 0; row < rows; row++) {
+                maxId = Math.max(maxId, ids[row]);
+            }
+            header.putInt(MAGIC).putInt(COLUMN_COUNT).putInt(rows).putLong(rangeStart).putLong(rangeEnd)
+                    .putLong(times[0]).putLong(times[rows - 1]).putLong(maxId);
+            byte[][] compressed = new byte[COLUMN_COUNT][];
+            long offset = HEADER_BYTES;
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                compressed[column] = deflate(raw[column]);
+                header.putLong(offset).putInt(compressed[column].length).putInt(raw[column].length);
+                offset += compressed[column].length;
+            }
+            header.flip();
+
+            Path file = directory.resolve(String.format("%s-%s-%04d%s", name, generation, written.size(),
+                    TEMP_SUFFIX));
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                for (byte[] block : compressed) {
+                    ByteBuffer buffer = ByteBuffer.wrap(block);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(true);
+            }
+            written.add(Segment.open(file));
+
+            rows = 0;
+            for (Map<String, Integer> dictionary : dictionaries) {
+                if (dictionary != null) {
+                    dictionary.clear();
+                }
+            }
+        }
+    }
+
+    private static final class Segment {
+        private final Path file;
+        private final int rows;
+        private final long rangeStart;
+        private final long rangeEnd;
+        private final long minTime;
+        private final long maxTime;
+        private final long maxId;
+        private final long[] offsets = new long[COLUMN_COUNT];
+        private final int[] compressedLengths = new int[COLUMN_COUNT];
+        private final int[] rawLengths = new int[COLUMN_COUNT];
+        private final long size;
+        // 段列表持有的引用加上进行中的读取数，归零时删除文件
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Segment(Path file, ByteBuffer header, long size) {
+            this.file = file;
+            // magic和列数已在open中校验
+            header.position(Integer.BYTES * 2);
+            this.rows = header.getInt();
+            this.rangeStart = header.getLong();
+            this.rangeEnd = header.getLong();
+            this.minTime = header.getLong();
+            this.maxTime = header.getLong();
+            this.maxId = header.getLong();
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                offsets[column] = header.getLong();
+                compressedLengths[column] = header.getInt();
+                rawLengths[column] = header.getInt();
+            }
+            this.size = size;
+        }
+
+        private static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer header = read(channel, HEADER_BYTES, file);
+                if (header.getInt(0) != MAGIC) {
+                    throw new IOException("无效的归档段文件: " + file);
+                }
+                if (header.getInt(Integer.BYTES) != COLUMN_COUNT) {
+                    throw new IOException("不支持的归档段列数: " + file);
+                }
+                return new Segment(file, header, channel.size());
+            }
+        }
+
+        private static ByteBuffer read(FileChannel channel, int length, Path file) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // 读满指定长度
+            }
+            buffer.flip();
+            if (buffer.remaining() < length) {
+                throw new IOException("归档段文件头不完整: " + file);
+            }
+            return buffer;
+        }
+
+        private boolean overlaps(Query query) {
+            if (query.startTime > maxTime || query.endTime < minTime) {
+                return false;
+            }
+            return !query.hasCursor || minTime <= query.cursorTime;
+        }
+
+        // 段已被释放时返回false，此时不能再打开文件
+        private boolean retain() {
+            for (int count = references.get(); count > 0; count = references.get()) {
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                deleteQuietly(file);
+            }
+        }
+
+        // 段内每一行都满足条件，无需读取段数据
+        private boolean coveredBy(Query query) {
+            return !query.hasFilters() && query.startTime <= minTime && maxTime <= query.endTime;
+        }
+    }
+
+    // 一次查询中读取的段数据，各列在首次使用时才解压
+    private static final class SegmentData implements Closeable {
+        private final Segment segment;
+        private final FileChannel channel;
+        private final long[][] longs = new long[COLUMN_COUNT][];
+        private final Dictionary[] dictionaries = new Dictionary[COLUMN_COUNT];
+
+        private SegmentData(Segment segment, FileChannel channel) {
+            this.segment = segment;
+            this.channel = channel;
+        }
+
+        // 持有段的引用后打开文件，段已被删除或替换时返回null
+        private static SegmentData open(Segment segment) {
+            if (!segment.retain()) {
+                return null;
+            }
+            try {
+                return new SegmentData(segment, FileChannel.open(segment.file, StandardOpenOption.READ));
+            } catch (IOException e) {
+                segment.release();
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private ByteBuffer read(int column) {
+            try {
+                ByteBuffer compressed = ByteBuffer.allocate(segment.compressedLengths[column]);
+                long position = segment.offsets[column];
+                while (compressed.hasRemaining()) {
+                    int read = channel.read(compressed, position + compressed.position());
+                    if (read < 0) {
+                        throw new IOException("归档段文件不完整: " + segment.file);
+                    }
+                }
+                return ByteBuffer.wrap(inflate(compressed.array(), segment.rawLengths[column]));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private long[] deltas(int column) {
+            if (longs[column] == null) {
+                ByteBuffer buffer = read(column);
+                long[] values = new long[segment.rows];
+                long previous = 0;
+                for (int row = 0; row < values.length; row++) {
+                    previous += unzigzag(readVarLong(buffer));
+                    values[row] = previous;
+                }
+                longs[column] = values;
+            }
+            return longs[column];
+        }
+
+        private long[] values(int column) {
+            if (longs[column] == null) {
+                ByteBuffer buffer = read(column);
+                long[] values = new long[segment.rows];
+                for (int row = 0; row < values.length; row++) {
+                    values[row] = readVarLong(buffer);
+                }
+                longs[column] = values;
+            }
+            return longs[column];
+        }
+
+        private Dictionary dictionary(int column) {
+            if (dictionaries[column] == null) {
+                ByteBuffer buffer = read(column);
+                String[] values = new String[(int) readVarLong(buffer)];
+                for (int i = 0; i < values.length; i++) {
+                    byte[] bytes = new byte[(int) readVarLong(buffer)];
+                    buffer.get(bytes);
+                    values[i] = new String(bytes, StandardCharsets.UTF_8);
+                }
+                int[] codes = new int[segment.rows];
+                for (int row = 0; row < codes.length; row++) {
+                    codes[row] = (int) readVarLong(buffer);
+                }
+                dictionaries[column] = new Dictionary(values, codes);
+            }
+            return dictionaries[column];
+        }
+
+        private AdminOperationLog materialize(int row) {
+            AdminOperationLog log = new AdminOperationLog();
+            log.setId(deltas(ID)[row]);
+            log.setAdminId(decodeNullable(values(ADMIN_ID)[row]));
+            log.setAdminUsername(dictionary(ADMIN_USERNAME).get(row));
+            log.setOperationType(dictionary(OPERATION_TYPE).get(row));
+            log.setObjectType(dictionary(OBJECT_TYPE).get(row));
+            log.setObjectId(decodeNullable(values(OBJECT_ID)[row]));
+            log.setObjectName(dictionary(OBJECT_NAME).get(row));
+            log.setResult(dictionary(RESULT).get(row));
+            log.setOperationTime(fromMicros(deltas(OPERATION_TIME)[row]));
+            log.setIpAddress(dictionary(IP_ADDRESS).get(row));
+            log.setOccurrences((int) values(OCCURRENCES)[row]);
+            long last = values(LAST_OPERATION_TIME)[row];
+            log.setLastOperationTime(last == 0 ? null : fromMicros(deltas(OPERATION_TIME)[row] + last - 1));
+            return log;
+        }
+
+        @Override
+        public void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                segment.release();
+            }
+        }
+    }
+
+    private static final class Dictionary {
+        private final String[] values;
+        private final int[] codes;
+
+        private Dictionary(String[] values, int[] codes) {
+            this.values = values;
+            this.codes = codes;
+        }
+
+        private String get(int row) {
+            int code = codes[row];
+            return code == 0 ? null : values[code - 1];
+        }
+
+        // 每个编码是否满足条件，下标为编码
+        private boolean[] accept(Predicate<String> predicate) {
+            boolean[] accepted = new boolean[values.length + 1];
+            for (int i = 0; i < values.length; i++) {
+                accepted[i + 1] = predicate.test(values[i]);
+            }
+            return accepted;
+        }
+    }
+
+    // 在段内字典上预先计算各筛选条件接受的编码，逐行判断时只比较整数
+    private static final class Matcher {
+        private final Query query;
+        private final long[] times;
+        private final long[] ids;
+        private final int[][] codes = new int[COLUMN_COUNT][];
+        private final boolean[][] accepted = new boolean[COLUMN_COUNT][];
+        private boolean empty;
+
+        private Matcher(Query query, SegmentData data) {
+            this.query = query;
+            if (query.adminUsername != null) {
+                filter(data, ADMIN_USERNAME, v -> v.startsWith(query.adminUsername));
+            }
+            if (query.operationType != null) {
+                filter(data, OPERATION_TYPE, query.operationType::equals);
+            }
+            if (query.objectType != null) {
+                filter(data, OBJECT_TYPE, query.objectType::equals);
+            }
+            if (query.result != null) {
+                filter(data, RESULT, query.result::equals);
+            }
+            this.times = empty ? null : data.deltas(OPERATION_TIME);
+            this.ids = empty || !query.hasCursor ? null : data.deltas(ID);
+        }
+
+        private void filter(SegmentData data, int column, Predicate<String> predicate) {
+            if (empty) {
+                return;
+            }
+            Dictionary dictionary = data.dictionary(column);
+            boolean[] accept = dictionary.accept(predicate);
+            boolean any = false;
+            for (boolean value : accept) {
+                any |= value;
+            }
+            empty = !any;
+            codes[column] = dictionary.codes;
+            accepted[column] = accept;
+        }
+
+        private boolean matches(int row) {
+            long time = times[row];
+            if (time < query.startTime || time > query.endTime) {
+                return false;
+            }
+            if (query.hasCursor && (time > query.cursorTime
+                    || (time == query.cursorTime && ids[row] >= query.cursorId))) {
+                return false;
+            }
+            for (int column = 0; column < COLUMN_COUNT; column++) {
+                if (accepted[column] != null && !accepted[column][codes[column][row]]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static byte[] encodeDeltas(long[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2);
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, zigzag(values[i] - previous));
+            previous = values[i];
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeValues(long[] values, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2);
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, values[i]);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeDictionary(Map<String, Integer> dictionary, int[] codes, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count * 2);
+        writeVarLong(out, dictionary.size());
+        for (String value : dictionary.keySet()) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        for (int i = 0; i < count; i++) {
+            writeVarLong(out, codes[i]);
+        }
+        return out.toByteArray();
+    }
+
+    // 可为null的数值：0表示null，其余为zigzag编码加1
+    private static long encodeNullable(Long value) {
+        return value == null ? 0 : zigzag(value) + 1;
+    }
+
+    private static Long decodeNullable(long encoded) {
+        return encoded == 0 ? null : unzigzag(encoded - 1);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int inflated = inflater.inflate(raw, length, rawLength - length);
+                // 数据被截断或需要预设字典时不会再有输出，不能继续循环
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("归档段数据损坏");
+                }
+                length += inflated;
+            }
+            if (length < rawLength) {
+                throw new IOException("归档段数据损坏");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("归档段数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
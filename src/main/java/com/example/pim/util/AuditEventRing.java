@@ -0,0 +1,102 @@
+package com.example.pim.util;
+
+import com.example.pim.entity.AdminOperationLog;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 最近操作日志的环形缓冲区
+ * 写入方通过原子递增取得序号后写入对应槽位，读取方按序号从槽位读取，读写都不加锁；
+ * 容量固定为2的幂，新事件覆盖最早的事件，落后超过容量的读取方会跳过被覆盖的部分。
+ * 序号从1开始递增，在应用重启后重新计数，只用作读取位置；对外使用日志自身的ID。
+ */
+public class AuditEventRing {
+
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+    private final AtomicLong lastSequence = new AtomicLong();
+
+    public AuditEventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 30)) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    // 写入一条日志，返回分配的序号
+    public long publish(AdminOperationLog log) {
+        long sequence = lastSequence.incrementAndGet();
+        slots.set((int) (sequence & mask), new Event(sequence, log));
+        return sequence;
+    }
+
+    // 已分配的最大序号，对应的事件可能还在写入中
+    public long getLastSequence() {
+        return lastSequence.get();
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * 仍在缓冲区中、日志ID大于lastId的最早事件的前一个序号，从该位置读取即可补上lastId之后的事件；
+     * 没有这样的事件时返回最后一个序号
+     */
+    public long sequenceAfterLogId(long lastId) {
+        long last = lastSequence.get();
+        for (long sequence = Math.max(1, last - mask); sequence <= last; sequence++) {
+            Event event = slots.get((int) (sequence & mask));
+            if (event != null && event.sequence == sequence && event.log.getId() != null
+                    && event.log.getId() > lastId) {
+                return sequence - 1;
+            }
+        }
+        return last;
+    }
+
+    /**
+     * 按序号顺序读取after之后的事件，最多max条，返回读到的最后一个序号
+     * 读取方落后超过容量时从仍在缓冲区中的最早事件开始，访问到的事件序号会大于after + 1；
+     * 遇到已分配序号但尚未写入完成的槽位时停止，下次从该序号继续读取。
+     */
+    public long read(long after, int max, Consumer<Event> visitor) {
+        long sequence = Math.max(after + 1, lastSequence.get() - mask);
+        int count = 0;
+        while (count < max) {
+            Event event = slots.get((int) (sequence & mask));
+            if (event == null || event.sequence < sequence) {
+                break;
+            }
+            if (event.sequence > sequence) {
+                // 读取过程中槽位被覆盖，跳到仍在缓冲区中的最早事件
+                sequence = Math.max(sequence + 1, lastSequence.get() - mask);
+                continue;
+            }
+            visitor.accept(event);
+            sequence++;
+            count++;
+        }
+        return Math.max(after, sequence - 1);
+    }
+
+    public static final class Event {
+
+        private final long sequence;
+        private final AdminOperationLog log;
+
+        private Event(long sequence, AdminOperationLog log) {
+            this.sequence = sequence;
+            this.log = log;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public AdminOperationLog getLog() {
+            return log;
+        }
+    }
+}
@@ -0,0 +1,542 @@
+package com.example.pim.util;
+
+import com.example.pim.entity.AdminOperationLog;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 只追加的操作日志文件
+ * 日志按顺序写入内存映射的段文件，段文件写满或超过时间间隔后滚动；
+ * 每个段每隔固定条数记录一个块的起始位置和时间范围（稀疏时间索引），按时间范围查询时只扫描重叠的块。
+ * 段关闭时索引写入同名的.idx文件，启动时直接加载，只有最后一个段需要重新扫描。
+ * 只有写入中的段持有读写映射；段关闭时截掉未使用的部分并释放写映射，之后读取时按需只读映射，
+ * 同时保留的映射数量有上限，按访问顺序淘汰。
+ *
+ * 记录格式：int 记录长度, long id, long 操作时间(毫秒), long 管理员ID, long 对象ID, byte 标志位,
+ * 之后依次为管理员用户名、操作类型、对象类型、对象名称、操作结果、IP地址（short 字节长度 + UTF-8，-1表示null，
+ * 超过32767字节的字段在字符边界处截断）；
+ * 合并记录（标志位含FLAG_COALESCED）最后还有 int 次数, long 最后一次操作时间(毫秒)。
+ */
+public class AuditJournal implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES * 4 + 1;
+    private static final byte FLAG_ADMIN_ID = 1;
+    private static final byte FLAG_OBJECT_ID = 2;
+    private static final byte FLAG_COALESCED = 4;
+    private static final int COALESCED_BYTES = Integer.BYTES + Long.BYTES;
+    private static final int MAX_FIELD_BYTES = Short.MAX_VALUE;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long rollIntervalInMs;
+    private final int indexInterval;
+    private final int mappedSegments;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+    private final Set<String> operationTypes = ConcurrentHashMap.newKeySet();
+    private final Set<String> objectTypes = ConcurrentHashMap.newKeySet();
+    // 已关闭段的只读映射，被淘汰的映射在不再被读取方引用后由GC释放
+    private final Map<Segment, ByteBuffer> mappings = new LinkedHashMap<Segment, ByteBuffer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Segment, ByteBuffer> eldest) {
+            return size() > mappedSegments;
+        }
+    };
+
+    private Segment active;
+    private long nextId = 1;
+
+    public AuditJournal(Path directory, int segmentSize, long rollIntervalInMs, int indexInterval,
+                        int mappedSegments) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.rollIntervalInMs = rollIntervalInMs;
+        this.indexInterval = Math.max(1, indexInterval);
+        this.mappedSegments = Math.max(1, mappedSegments);
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    private void recover() throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.filter(p -> p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        for (int i = 0; i < files.size(); i++) {
+            Path file = files.get(i);
+            String name = file.getFileName().toString();
+            long baseId = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+            boolean last = i == files.size() - 1;
+            Segment segment = new Segment(file, baseId);
+            // 已关闭的段优先加载索引文件，最后一个段可能在写入中途停止，必须重新扫描
+            if (last || !segment.loadIndex()) {
+                segment.rebuild(this);
+            }
+            if (last) {
+                segment.openForAppend();
+            } else {
+                segment.trim();
+            }
+            segments.add(segment);
+            nextId = Math.max(nextId, segment.baseId + segment.recordCount);
+        }
+        if (segments.isEmpty()) {
+            roll();
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+    }
+
+    /**
+     * 追加一条日志并返回分配的ID
+     */
+    public synchronized long append(AdminOperationLog log) {
+        byte[][] fields = {
+                encode(log.getAdminUsername()), encode(log.getOperationType()), encode(log.getObjectType()),
+                encode(log.getObjectName()), encode(log.getResult()), encode(log.getIpAddress())
+        };
+        boolean coalesced = log.getLastOperationTime() != null;
+        int length = HEADER_BYTES + (coalesced ? COALESCED_BYTES : 0);
+        for (byte[] field : fields) {
+            length += Short.BYTES + (field == null ? 0 : field.length);
+        }
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("日志记录超过段文件大小");
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            if (active.writePosition + length > segmentSize
+                    || (active.recordCount > 0 && now - active.createdAt >= rollIntervalInMs)) {
+                roll();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        long id = nextId++;
+        long time = toMillis(log.getOperationTime());
+        byte flags = 0;
+        if (log.getAdminId() != null) {
+            flags |= FLAG_ADMIN_ID;
+        }
+        if (log.getObjectId() != null) {
+            flags |= FLAG_OBJECT_ID;
+        }
+        if (coalesced) {
+            flags |= FLAG_COALESCED;
+        }
+
+        ByteBuffer buffer = active.buffer.duplicate();
+        buffer.position(active.writePosition);
+        buffer.putInt(length)
+                .putLong(id)
+                .putLong(time)
+                .putLong(log.getAdminId() != null ? log.getAdminId() : 0L)
+                .putLong(log.getObjectId() != null ? log.getObjectId() : 0L)
+                .put(flags);
+        for (byte[] field : fields) {
+            if (field == null) {
+                buffer.putShort((short) -1);
+            } else {
+                buffer.putShort((short) field.length).put(field);
+            }
+        }
+        if (coalesced) {
+            buffer.putInt(log.getOccurrences()).putLong(toMillis(log.getLastOperationTime()));
+        }
+
+        active.index(active.writePosition, time, indexInterval);
+        active.recordCount++;
+        // 写入位置最后更新，读线程只读取该位置之前的完整记录
+        active.writePosition += length;
+        track(log.getOperationType(), log.getObjectType());
+        log.setId(id);
+        return id;
+    }
+
+    /**
+     * 按时间范围扫描日志，参数为null表示不限
+     * 只保证返回时间范围内的全部记录，不保证顺序
+     */
+    public void scan(LocalDateTime startTime, LocalDateTime endTime, Consumer<AdminOperationLog> visitor) {
+        long from = startTime != null ? toMillis(startTime) : Long.MIN_VALUE;
+        long to = endTime != null ? toMillis(endTime) : Long.MAX_VALUE;
+        for (Segment segment : segments) {
+            segment.scan(from, to, visitor, this);
+        }
+    }
+
+    /**
+     * 将当前段刷写到磁盘
+     */
+    public void force() {
+        Segment segment = active;
+        MappedByteBuffer buffer = segment != null ? segment.buffer : null;
+        // 段已被关闭时写映射在关闭前已刷写
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    public Set<String> getOperationTypes() {
+        return Collections.unmodifiableSet(operationTypes);
+    }
+
+    public Set<String> getObjectTypes() {
+        return Collections.unmodifiableSet(objectTypes);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        synchronized (mappings) {
+            mappings.clear();
+        }
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.seal();
+        }
+        Path file = directory.resolve(String.format("%019d%s", nextId, SEGMENT_SUFFIX));
+        Segment segment = new Segment(file, nextId);
+        segment.openForAppend();
+        active = segment;
+        segments.add(segment);
+    }
+
+    // 已关闭段的只读映射，不在缓存中时映射写入位置之前的部分
+    private ByteBuffer mapped(Segment segment) {
+        synchronized (mappings) {
+            ByteBuffer buffer = mappings.get(segment);
+            if (buffer == null) {
+                try (FileChannel channel = FileChannel.open(segment.file, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.writePosition);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                mappings.put(segment, buffer);
+            }
+            return buffer;
+        }
+    }
+
+    private void track(String operationType, String objectType) {
+        if (operationType != null) {
+            operationTypes.add(operationType);
+        }
+        if (objectType != null) {
+            objectTypes.add(objectType);
+        }
+    }
+
+    private long toMillis(LocalDateTime time) {
+        return time.atZone(zone).toInstant().toEpochMilli();
+    }
+
+    private LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+    }
+
+    // 字段长度以short保存，超长的字段截断，截断位置落在多字节字符中间时退回到该字符之前
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_FIELD_BYTES) {
+            return bytes;
+        }
+        int length = MAX_FIELD_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private AdminOperationLog decode(ByteBuffer buffer, int position) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(position + Integer.BYTES);
+        AdminOperationLog log = new AdminOperationLog();
+        log.setId(record.getLong());
+        log.setOperationTime(toLocalDateTime(record.getLong()));
+        long adminId = record.getLong();
+        long objectId = record.getLong();
+        byte flags = record.get();
+        log.setAdminId((flags & FLAG_ADMIN_ID) != 0 ? adminId : null);
+        log.setObjectId((flags & FLAG_OBJECT_ID) != 0 ? objectId : null);
+        log.setAdminUsername(readString(record));
+        log.setOperationType(readString(record));
+        log.setObjectType(readString(record));
+        log.setObjectName(readString(record));
+        log.setResult(readString(record));
+        log.setIpAddress(readString(record));
+        if ((flags & FLAG_COALESCED) != 0) {
+            log.setOccurrences(record.getInt());
+            log.setLastOperationTime(toLocalDateTime(record.getLong()));
+        }
+        return log;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 稀疏索引中的一个块：起始位置和块内记录的时间范围
+     */
+    private static final class Block {
+        private final int offset;
+        private volatile long minTime;
+        private volatile long maxTime;
+
+        private Block(int offset, long minTime, long maxTime) {
+            this.offset = offset;
+            this.minTime = minTime;
+            this.maxTime = maxTime;
+        }
+    }
+
+    private final class Segment {
+        private final Path file;
+        private final long baseId;
+        private final List<Block> blocks = new CopyOnWriteArrayList<>();
+        private final long createdAt;
+        private volatile int writePosition;
+        private int recordCount;
+        private volatile boolean sealed = true;
+        // 只有写入中的段持有读写通道和整段映射，关闭后置为null
+        private FileChannel channel;
+        private volatile MappedByteBuffer buffer;
+
+        private Segment(Path file, long baseId) {
+            this.file = file;
+            this.baseId = baseId;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        // 作为写入中的段打开：截掉写入位置之后未写完的记录，再按段大小映射，扩展出的部分为0
+        private void openForAppend() throws IOException {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            channel.truncate(writePosition);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            sealed = false;
+        }
+
+        // 截掉已关闭段文件中写入位置之后的空白部分
+        private void trim() throws IOException {
+            if (Files.size(file) > writePosition) {
+                try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    fileChannel.truncate(writePosition);
+                }
+            }
+        }
+
+        // 写入中的段直接读取写映射，已关闭的段从缓存取得只读映射
+        private ByteBuffer data() {
+            MappedByteBuffer current = buffer;
+            return current != null ? current : mapped(this);
+        }
+
+        private void index(int position, long time, int interval) {
+            if (recordCount % interval == 0) {
+                blocks.add(new Block(position, time, time));
+                return;
+            }
+            Block block = blocks.get(blocks.size() - 1);
+            if (time < block.minTime) {
+                block.minTime = time;
+            }
+            if (time > block.maxTime) {
+                block.maxTime = time;
+            }
+        }
+
+        private void scan(long from, long to, Consumer<AdminOperationLog> visitor, AuditJournal journal) {
+            int limit = writePosition;
+            if (limit == 0) {
+                return;
+            }
+            ByteBuffer data = data();
+            List<Block> snapshot = blocks;
+            int count = snapshot.size();
+            for (int i = 0; i < count; i++) {
+                Block block = snapshot.get(i);
+                int end = i + 1 < count ? snapshot.get(i + 1).offset : limit;
+                // 写入中的最后一个块时间范围可能尚未更新，始终扫描
+                boolean open = !sealed && i == count - 1;
+                if (!open && (block.maxTime < from || block.minTime > to)) {
+                    continue;
+                }
+                int position = block.offset;
+                while (position < end) {
+                    int length = data.getInt(position);
+                    long time = data.getLong(position + Integer.BYTES + Long.BYTES);
+                    if (time >= from && time <= to) {
+                        visitor.accept(journal.decode(data, position));
+                    }
+                    position += length;
+                }
+            }
+        }
+
+        // 扫描整个段，重建写入位置、稀疏索引和取值集合
+        private void rebuild(AuditJournal journal) throws IOException {
+            ByteBuffer data;
+            try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                data = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            }
+            int position = 0;
+            int limit = data.capacity();
+            while (position + HEADER_BYTES <= limit) {
+                int length = data.getInt(position);
+                if (length < HEADER_BYTES || position + length > limit
+                        || data.getLong(position + Integer.BYTES) != baseId + recordCount) {
+                    break;
+                }
+                AdminOperationLog log = journal.decode(data, position);
+                index(position, data.getLong(position + Integer.BYTES + Long.BYTES), indexInterval);
+                journal.track(log.getOperationType(), log.getObjectType());
+                recordCount++;
+                position += length;
+            }
+            writePosition = position;
+        }
+
+        // 刷写并写入索引后截掉未使用的部分，释放读写通道和写映射
+        private void seal() throws IOException {
+            if (sealed) {
+                return;
+            }
+            buffer.force();
+            writeIndex();
+            channel.truncate(writePosition);
+            channel.close();
+            channel = null;
+            sealed = true;
+            buffer = null;
+        }
+
+        private Path indexFile() {
+            String name = file.getFileName().toString();
+            return file.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+        }
+
+        private void writeIndex() throws IOException {
+            Path tmp = indexFile().resolveSibling(indexFile().getFileName() + ".tmp");
+            Set<String> segmentOperationTypes = new HashSet<>();
+            Set<String> segmentObjectTypes = new HashSet<>();
+            scan(Long.MIN_VALUE, Long.MAX_VALUE, log -> {
+                if (log.getOperationType() != null) {
+                    segmentOperationTypes.add(log.getOperationType());
+                }
+                if (log.getObjectType() != null) {
+                    segmentObjectTypes.add(log.getObjectType());
+                }
+            }, AuditJournal.this);
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(writePosition);
+                out.writeInt(recordCount);
+                out.writeInt(blocks.size());
+                for (Block block : blocks) {
+                    out.writeInt(block.offset);
+                    out.writeLong(block.minTime);
+                    out.writeLong(block.maxTime);
+                }
+                writeStrings(out, segmentOperationTypes);
+                writeStrings(out, segmentObjectTypes);
+            }
+            Files.move(tmp, indexFile(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        private boolean loadIndex() {
+            Path indexFile = indexFile();
+            if (!Files.exists(indexFile)) {
+                return false;
+            }
+            try (DataInputStream in = new DataInputStream(Files.newInputStream(indexFile))) {
+                int position = in.readInt();
+                int records = in.readInt();
+                int blockCount = in.readInt();
+                List<Block> loaded = new ArrayList<>(blockCount);
+                for (int i = 0; i < blockCount; i++) {
+                    loaded.add(new Block(in.readInt(), in.readLong(), in.readLong()));
+                }
+                for (String value : readStrings(in)) {
+                    operationTypes.add(value);
+                }
+                for (String value : readStrings(in)) {
+                    objectTypes.add(value);
+                }
+                blocks.addAll(loaded);
+                writePosition = position;
+                recordCount = records;
+                return true;
+            } catch (IOException e) {
+                // 索引文件损坏时重新扫描段文件
+                blocks.clear();
+                return false;
+            }
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, Set<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static List<String> readStrings(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(in.readUTF());
+        }
+        return values;
+    }
+}
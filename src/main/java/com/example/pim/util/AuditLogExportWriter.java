@@ -0,0 +1,177 @@
+package com.example.pim.util;
+
+import com.example.pim.entity.AdminOperationLog;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 操作日志导出
+ * 逐条把日志写入输出流，只占用固定大小的缓冲区；支持CSV和NDJSON（每行一个JSON对象），可选gzip压缩。
+ * 全部写完后须调用finish；未调用finish就关闭视为导出失败，不再写出缓冲的内容和gzip结尾，也不关闭输出流。
+ */
+public class AuditLogExportWriter implements Closeable {
+
+    public enum Format {
+        CSV("text/csv", ".csv"),
+        NDJSON("application/x-ndjson", ".ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("不支持的导出格式: " + value);
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String CSV_HEADER = "id,adminId,adminUsername,operationType,objectType,objectId," +
+            "objectName,result,operationTime,ipAddress,occurrences,lastOperationTime";
+
+    private final Format format;
+    private final ObjectMapper objectMapper;
+    private final GZIPOutputStream gzip;
+    private final BufferedWriter writer;
+    private long count;
+    private boolean finished;
+    private boolean outputFailed;
+
+    public AuditLogExportWriter(Format format, boolean compress, OutputStream out, ObjectMapper objectMapper)
+            throws IOException {
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.gzip = compress ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        this.writer = new BufferedWriter(new OutputStreamWriter(compress ? gzip : out, StandardCharsets.UTF_8),
+                BUFFER_SIZE);
+        if (format == Format.CSV) {
+            // 带BOM，Excel打开时才能正确识别中文
+            writer.write('\uFEFF');
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * 写入一条日志，IO异常包装为UncheckedIOException，便于在回调中使用
+     */
+    public void write(AdminOperationLog log) {
+        try {
+            if (format == Format.CSV) {
+                writeCsv(log);
+            } else {
+                writer.write(objectMapper.writeValueAsString(log));
+            }
+            writer.write('\n');
+            count++;
+        } catch (IOException e) {
+            outputFailed = true;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    // 写出到输出流失败，通常是客户端已断开
+    public boolean isOutputFailed() {
+        return outputFailed;
+    }
+
+    /**
+     * 导出完成：写出缓冲区中的内容，压缩时写入gzip结尾
+     */
+    public void finish() throws IOException {
+        try {
+            writer.flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        } catch (IOException e) {
+            outputFailed = true;
+            throw e;
+        }
+        finished = true;
+    }
+
+    private void writeCsv(AdminOperationLog log) throws IOException {
+        writer.write(String.valueOf(log.getId()));
+        writer.write(',');
+        writeField(log.getAdminId());
+        writer.write(',');
+        writeField(log.getAdminUsername());
+        writer.write(',');
+        writeField(log.getOperationType());
+        writer.write(',');
+        writeField(log.getObjectType());
+        writer.write(',');
+        writeField(log.getObjectId());
+        writer.write(',');
+        writeField(log.getObjectName());
+        writer.write(',');
+        writeField(log.getResult());
+        writer.write(',');
+        writeField(log.getOperationTime());
+        writer.write(',');
+        writeField(log.getIpAddress());
+        writer.write(',');
+        writeField(log.getOccurrences());
+        writer.write(',');
+        writeField(log.getLastOperationTime());
+    }
+
+    private void writeField(Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        // 以=、+、-、@开头的文本在表格软件中会被当作公式执行，前面加单引号
+        boolean formula = !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0 && !(value instanceof Number);
+        boolean quote = formula || text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        if (formula) {
+            writer.write('\'');
+        }
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    // 未完成时不刷新也不关闭，由调用方中断连接，客户端不会收到格式完整但内容不全的文件
+    @Override
+    public void close() throws IOException {
+        if (finished) {
+            writer.close();
+        }
+    }
+}
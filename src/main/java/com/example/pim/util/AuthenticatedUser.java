@@ -0,0 +1,28 @@
+package com.example.pim.util;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * 携带用户ID的认证主体
+ * JWT过滤器根据令牌中的用户ID构建，UserDetailsService从数据库加载时同样带上ID，操作日志据此记录管理员ID
+ */
+public class AuthenticatedUser extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long userId;
+
+    public AuthenticatedUser(Long userId, String username, String password, boolean enabled,
+                             Collection<? extends GrantedAuthority> authorities) {
+        // 账户未过期、凭证未过期、账户未锁定
+        super(username, password, enabled, true, true, true, authorities);
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
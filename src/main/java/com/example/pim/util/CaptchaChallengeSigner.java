@@ -0,0 +1,152 @@
+package com.example.pim.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 无状态验证码挑战
+ * 挑战ID = base64url(随机数 + 过期时间 + 标签) + "." + base64url(HMAC(随机数 + 过期时间 + 答案))，
+ * 标签是不含答案的随机数和过期时间的HMAC，用于在记录挑战之前确认挑战由服务端签发；
+ * 答案不出现在挑战ID中，服务端无需保存会话即可校验；每个挑战只能校验一次，已使用的挑战记录在有界集合中直到过期。
+ */
+@Component
+public class CaptchaChallengeSigner {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_BYTES = 16;
+    private static final int TAG_BYTES = 16;
+    private static final int PAYLOAD_BYTES = NONCE_BYTES + Long.BYTES;
+    private static final byte[] TAG_DOMAIN = "challenge".getBytes(StandardCharsets.UTF_8);
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+
+    // 已使用的挑战：随机数 -> 过期时间
+    private final ConcurrentHashMap<String, Long> usedChallenges = new ConcurrentHashMap<>();
+
+    @Value("${app.captcha.secret}")
+    private String secret;
+
+    @Value("${app.captcha.challengeTtlInMs:300000}")
+    private long challengeTtlInMs;
+
+    @Value("${app.captcha.maxUsedChallenges:100000}")
+    private int maxUsedChallenges;
+
+    private SecretKeySpec key;
+
+    @PostConstruct
+    public void init() {
+        key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+    }
+
+    /**
+     * 为验证码答案生成签名的挑战ID
+     */
+    public String sign(String code) {
+        byte[] nonce = new byte[NONCE_BYTES];
+        random.nextBytes(nonce);
+        long expiresAt = System.currentTimeMillis() + challengeTtlInMs;
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES).put(nonce).putLong(expiresAt).array();
+        byte[] tagged = ByteBuffer.allocate(PAYLOAD_BYTES + TAG_BYTES).put(payload).put(tag(payload)).array();
+        return ENCODER.encodeToString(tagged) + "." + ENCODER.encodeToString(mac(payload, code));
+    }
+
+    /**
+     * 校验挑战ID与用户输入的答案
+     * 无论答案是否正确，挑战都会被标记为已使用
+     */
+    public boolean verify(String challengeId, String answer) {
+        if (challengeId == null || answer == null) {
+            return false;
+        }
+        int dot = challengeId.indexOf('.');
+        if (dot <= 0) {
+            return false;
+        }
+        byte[] tagged;
+        byte[] signature;
+        try {
+            tagged = DECODER.decode(challengeId.substring(0, dot));
+            signature = DECODER.decode(challengeId.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if (tagged.length != PAYLOAD_BYTES + TAG_BYTES) {
+            return false;
+        }
+        byte[] payload = Arrays.copyOf(tagged, PAYLOAD_BYTES);
+        // 先确认挑战由服务端签发，伪造的挑战不会进入已使用集合
+        if (!MessageDigest.isEqual(Arrays.copyOfRange(tagged, PAYLOAD_BYTES, tagged.length), tag(payload))) {
+            return false;
+        }
+        long expiresAt = ByteBuffer.wrap(payload, NONCE_BYTES, Long.BYTES).getLong();
+        long now = System.currentTimeMillis();
+        if (expiresAt <= now || expiresAt > now + challengeTtlInMs) {
+            return false;
+        }
+        if (!markUsed(challengeId.substring(0, dot), expiresAt, now)) {
+            return false;
+        }
+        return MessageDigest.isEqual(signature, mac(payload, answer));
+    }
+
+    // 记录已使用的挑战，重复使用或集合已满时返回false
+    private boolean markUsed(String nonce, long expiresAt, long now) {
+        if (usedChallenges.size() >= maxUsedChallenges) {
+            Iterator<Map.Entry<String, Long>> it = usedChallenges.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue() <= now) {
+                    it.remove();
+                }
+            }
+            // 清理后仍然已满时拒绝校验，不能通过淘汰未过期记录来放行重放
+            if (usedChallenges.size() >= maxUsedChallenges) {
+                return false;
+            }
+        }
+        return usedChallenges.putIfAbsent(nonce, expiresAt) == null;
+    }
+
+    // 不含答案的挑战标签，与答案签名使用不同的前缀区分
+    private byte[] tag(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(TAG_DOMAIN);
+            mac.update(payload);
+            return Arrays.copyOf(mac.doFinal(), TAG_BYTES);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] mac(byte[] payload, String answer) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            mac.update(payload);
+            mac.update(answer.trim().toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.pim.util;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Base64;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class CaptchaUtil {
     // 验证码宽度
@@ -22,12 +26,16 @@ public class CaptchaUtil {
     // 验证码字符范围
     private static final String CODE_STR = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
 
-    private static final Random random = new Random();
+    // 字体对象不可变，所有线程共用
+    private static final Font FONT = new Font("Arial", Font.BOLD, FONT_SIZE);
+
+    // 每个线程复用自己的图片缓冲、图形上下文和PNG编码器，避免每次生成都重新分配
+    private static final ThreadLocal<Renderer> RENDERER = ThreadLocal.withInitial(Renderer::new);
 
     /**
      * 生成随机颜色
      */
-    private static Color getRandomColor(int min, int max) {
+    private static Color getRandomColor(Random random, int min, int max) {
         min = Math.min(min, 255);
         max = Math.min(max, 255);
         int r = min + random.nextInt(max - min);
@@ -40,30 +48,36 @@ public class CaptchaUtil {
      * 生成随机验证码
      */
     public static String generateCode() {
-        StringBuilder sb = new StringBuilder();
+        Random random = ThreadLocalRandom.current();
+        char[] chars = new char[CODE_COUNT];
         for (int i = 0; i < CODE_COUNT; i++) {
-            int index = random.nextInt(CODE_STR.length());
-            sb.append(CODE_STR.charAt(index));
+            chars[i] = CODE_STR.charAt(random.nextInt(CODE_STR.length()));
         }
-        return sb.toString();
+        return new String(chars);
     }
 
     /**
      * 生成验证码图片
      */
     public static BufferedImage generateImage(String code) {
-        // 创建图像
         BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
-        // 获取图形上下文
         Graphics g = image.getGraphics();
+        draw(g, code);
+        // 释放图形上下文
+        g.dispose();
+        return image;
+    }
+
+    private static void draw(Graphics g, String code) {
+        Random random = ThreadLocalRandom.current();
         // 设置背景色
-        g.setColor(getRandomColor(200, 250));
+        g.setColor(getRandomColor(random, 200, 250));
         g.fillRect(0, 0, WIDTH, HEIGHT);
         // 设置字体
-        g.setFont(new Font("Arial", Font.BOLD, FONT_SIZE));
+        g.setFont(FONT);
         // 绘制干扰线
         for (int i = 0; i < LINE_COUNT; i++) {
-            g.setColor(getRandomColor(160, 200));
+            g.setColor(getRandomColor(random, 160, 200));
             int x1 = random.nextInt(WIDTH);
             int y1 = random.nextInt(HEIGHT);
             int x2 = random.nextInt(WIDTH);
@@ -71,13 +85,18 @@ public class CaptchaUtil {
             g.drawLine(x1, y1, x2, y2);
         }
         // 绘制验证码字符
-        for (int i = 0; i < code.length(); i++) {
-            g.setColor(getRandomColor(10, 150));
-            g.drawString(String.valueOf(code.charAt(i)), (i * (WIDTH / CODE_COUNT)) + 5, 28);
+        char[] chars = code.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            g.setColor(getRandomColor(random, 10, 150));
+            g.drawChars(chars, i, 1, (i * (WIDTH / CODE_COUNT)) + 5, 28);
         }
-        // 释放图形上下文
-        g.dispose();
-        return image;
+    }
+
+    /**
+     * 在当前线程复用的缓冲上绘制验证码并编码为PNG字节
+     */
+    public static byte[] renderPng(String code) throws IOException {
+        return RENDERER.get().render(code);
     }
 
     /**
@@ -86,18 +105,43 @@ public class CaptchaUtil {
     public static String imageToBase64(BufferedImage image) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ImageIO.write(image, "PNG", baos);
-        byte[] imageData = baos.toByteArray();
-        return "data:image/png;base64," + Base64.getEncoder().encodeToString(imageData);
+        return toDataUri(baos.toByteArray());
+    }
+
+    private static String toDataUri(byte[] png) {
+        return "data:image/png;base64," + Base64.getEncoder().encodeToString(png);
     }
 
     /**
-     * 生成验证码和对应的Base64图片
+     * 生成验证码和对应的PNG图片
      */
     public static CaptchaResult generateCaptcha() throws IOException {
         String code = generateCode();
-        BufferedImage image = generateImage(code);
-        String base64Image = imageToBase64(image);
-        return new CaptchaResult(code, base64Image);
+        return new CaptchaResult(code, renderPng(code));
+    }
+
+    /**
+     * 线程私有的渲染器
+     */
+    private static final class Renderer {
+        private final BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        private final Graphics graphics = image.getGraphics();
+        private final ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        // 120x40的验证码PNG通常在2KB以内
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+        private byte[] render(String code) throws IOException {
+            draw(graphics, code);
+            buffer.reset();
+            // 直接写入内存，不使用ImageIO的磁盘缓存
+            try (ImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+                writer.setOutput(output);
+                writer.write(image);
+            } finally {
+                writer.setOutput(null);
+            }
+            return buffer.toByteArray();
+        }
     }
 
     /**
@@ -105,11 +149,11 @@ public class CaptchaUtil {
      */
     public static class CaptchaResult {
         private String code;
-        private String imageBase64;
+        private byte[] imageBytes;
 
-        public CaptchaResult(String code, String imageBase64) {
+        public CaptchaResult(String code, byte[] imageBytes) {
             this.code = code;
-            this.imageBase64 = imageBase64;
+            this.imageBytes = imageBytes;
         }
 
         public String getCode() {
@@ -120,12 +164,17 @@ public class CaptchaUtil {
             this.code = code;
         }
 
-        public String getImageBase64() {
-            return imageBase64;
+        public byte[] getImageBytes() {
+            return imageBytes;
         }
 
-        public void setImageBase64(String imageBase64) {
-            this.imageBase64 = imageBase64;
+        public void setImageBytes(byte[] imageBytes) {
+            this.imageBytes = imageBytes;
+        }
+
+        // JSON接口使用的Base64图片，只在需要时编码
+        public String getImageBase64() {
+            return toDataUri(imageBytes);
         }
     }
 }
\ No newline at end of file
@@ -1,57 +1,134 @@
 package com.example.pim.util;
 
+import com.example.pim.entity.User;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import org.springframework.util.StringUtils;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
 import java.util.Date;
+import java.util.UUID;
 
 @Component
-public class JwtTokenProvider {
+public class JwtTokenProvider implements MeterBinder {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    // 令牌中的自定义声明
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+    public static final String CLAIM_ENABLED = "enabled";
+    public static final String CLAIM_SECURITY_VERSION = "ver";
+
     @Value("${app.jwtSecret}")
     private String jwtSecret;
 
     @Value("${app.jwtExpirationInMs}")
     private int jwtExpirationInMs;
 
-    public String generateToken(Authentication authentication) {
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
+    // 已验证令牌缓存的最大条目数，0表示关闭缓存
+    @Value("${app.jwtCacheMaxSize:10000}")
+    private int jwtCacheMaxSize;
+
+    // 已验证令牌在缓存中的最长保留时间
+    @Value("${app.jwtCacheTtlInMs:300000}")
+    private long jwtCacheTtlInMs;
+
+    private TokenClaimsCache claimsCache;
+
+    @PostConstruct
+    public void init() {
+        claimsCache = new TokenClaimsCache(jwtCacheMaxSize, jwtCacheTtlInMs);
+    }
+
+    /**
+     * 生成JWT令牌
+     * 令牌中携带用户ID、角色、启用状态和安全版本号，过滤器据此直接构建认证信息，无需每次请求查询用户
+     */
+    public String generateToken(User user) {
         Date now = new Date();
         Date expiryDate = new Date(now.getTime() + jwtExpirationInMs);
 
         return Jwts.builder()
-                .setSubject(userDetails.getUsername())
-                .setIssuedAt(new Date())
+                .setId(UUID.randomUUID().toString())
+                .setSubject(user.getUsername())
+                .claim(CLAIM_USER_ID, user.getId())
+                .claim(CLAIM_ROLE, user.getRole() != null ? user.getRole() : "ROLE_USER")
+                .claim(CLAIM_ENABLED, user.getEnabled() == null || user.getEnabled())
+                .claim(CLAIM_SECURITY_VERSION, user.getSecurityVersion() != null ? user.getSecurityVersion() : 0)
+                .setIssuedAt(now)
                 .setExpiration(expiryDate)
                 .signWith(SignatureAlgorithm.HS512, jwtSecret)
                 .compact();
     }
 
-    public String getUsernameFromJWT(String token) {
-        Claims claims = Jwts.parser()
-                .setSigningKey(jwtSecret)
-                .parseClaimsJws(token)
-                .getBody();
-
-        return claims.getSubject();
-    }
-
-    public boolean validateToken(String authToken) {
+    /**
+     * 验证令牌并返回其Claims，只解析和验签一次
+     * 最近验证过的令牌直接从缓存返回；令牌无效时返回null
+     */
+    public Claims getVerifiedClaims(String token) {
+        String key = TokenClaimsCache.digest(token);
+        Claims claims = claimsCache.get(key);
+        if (claims != null) {
+            return claims;
+        }
         try {
-            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-            return true;
+            claims = Jwts.parser()
+                    .setSigningKey(jwtSecret)
+                    .parseClaimsJws(token)
+                    .getBody();
         } catch (Exception ex) {
             logger.error("Invalid JWT token: {}", ex.getMessage());
-            return false;
+            return null;
+        }
+        claimsCache.put(key, claims);
+        return claims;
+    }
+
+    /**
+     * 从请求头中提取Bearer令牌
+     */
+    public String resolveToken(HttpServletRequest request) {
+        String bearerToken = request.getHeader("Authorization");
+        if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
+            return bearerToken.substring(7);
         }
+        return null;
+    }
+
+    public String getUsernameFromJWT(String token) {
+        Claims claims = getVerifiedClaims(token);
+        return claims != null ? claims.getSubject() : null;
+    }
+
+    public boolean validateToken(String authToken) {
+        return getVerifiedClaims(authToken) != null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("jwt.claims.cache.requests", claimsCache, TokenClaimsCache::getHitCount)
+                .tag("result", "hit")
+                .description("已验证令牌缓存命中次数")
+                .register(registry);
+        FunctionCounter.builder("jwt.claims.cache.requests", claimsCache, TokenClaimsCache::getMissCount)
+                .tag("result", "miss")
+                .description("已验证令牌缓存未命中次数")
+                .register(registry);
+        FunctionCounter.builder("jwt.claims.cache.evictions", claimsCache, TokenClaimsCache::getEvictionCount)
+                .register(registry);
+        Gauge.builder("jwt.claims.cache.size", claimsCache, TokenClaimsCache::size)
+                .register(registry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,229 @@
+package com.example.pim.util;
+
+import java.util.Arrays;
+
+/**
+ * 内存中的登录失败计数器
+ * 以long为键（用户ID或IP地址编码），按键分段，每段是一个开放寻址的原始类型哈希表，
+ * 只锁定所在分段，没有全局锁。失败次数在滑动窗口内累计：距上次失败超过窗口时间后计数清零；
+ * 窗口长度不大于0时计数不随时间清零，只在reset或封禁时清零。
+ */
+public class LoginFailureTracker {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+    private final int stripeMask;
+    private final long windowMillis;
+    private final int maxEntriesPerStripe;
+
+    /**
+     * @param stripeCount  分段数量，向上取整为2的幂
+     * @param maxEntries   最多跟踪的键数量，超过后优先淘汰未被封禁且最久未失败的键
+     * @param windowMillis 滑动窗口长度，不大于0表示不限
+     */
+    public LoginFailureTracker(int stripeCount, int maxEntries, long windowMillis) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.stripeMask = n - 1;
+        this.windowMillis = windowMillis;
+        this.maxEntriesPerStripe = Math.max(INITIAL_CAPACITY / 2, maxEntries / n);
+    }
+
+    /**
+     * 记录一次失败，返回窗口内的累计失败次数
+     */
+    public int recordFailure(long key, long now) {
+        long h = mix(key);
+        Stripe stripe = stripes[(int) (h >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.findOrInsert(key, h, now);
+            if (!inWindow(stripe.lastFailure[slot], now)) {
+                stripe.counts[slot] = 0;
+            }
+            stripe.counts[slot]++;
+            stripe.lastFailure[slot] = now;
+            return stripe.counts[slot];
+        }
+    }
+
+    /**
+     * 窗口内的累计失败次数
+     */
+    public int getFailures(long key, long now) {
+        long h = mix(key);
+        Stripe stripe = stripes[(int) (h >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.find(key, h);
+            if (slot < 0 || !inWindow(stripe.lastFailure[slot], now)) {
+                return 0;
+            }
+            return stripe.counts[slot];
+        }
+    }
+
+    /**
+     * 封禁该键直到指定时间
+     */
+    public void blockUntil(long key, long until, long now) {
+        long h = mix(key);
+        Stripe stripe = stripes[(int) (h >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.findOrInsert(key, h, now);
+            stripe.blockedUntil[slot] = until;
+            stripe.counts[slot] = 0;
+        }
+    }
+
+    /**
+     * 剩余封禁时间（毫秒），未封禁返回0
+     */
+    public long getBlockRemaining(long key, long now) {
+        long h = mix(key);
+        Stripe stripe = stripes[(int) (h >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.find(key, h);
+            return slot < 0 ? 0 : Math.max(0, stripe.blockedUntil[slot] - now);
+        }
+    }
+
+    /**
+     * 清除该键的失败记录和封禁状态
+     */
+    public void reset(long key) {
+        long h = mix(key);
+        Stripe stripe = stripes[(int) (h >>> 32) & stripeMask];
+        synchronized (stripe) {
+            int slot = stripe.find(key, h);
+            if (slot >= 0) {
+                stripe.counts[slot] = 0;
+                stripe.lastFailure[slot] = 0;
+                stripe.blockedUntil[slot] = 0;
+            }
+        }
+    }
+
+    // MurmurHash3 fmix64
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private boolean inWindow(long lastFailure, long now) {
+        return windowMillis <= 0 || lastFailure + windowMillis > now;
+    }
+
+    /**
+     * 分段哈希表，线性探测；失效的条目只在扩容重建时移除
+     */
+    private final class Stripe {
+        private long[] keys = new long[INITIAL_CAPACITY];
+        private boolean[] used = new boolean[INITIAL_CAPACITY];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private long[] lastFailure = new long[INITIAL_CAPACITY];
+        private long[] blockedUntil = new long[INITIAL_CAPACITY];
+        private int size;
+
+        private int find(long key, long h) {
+            int mask = keys.length - 1;
+            for (int i = (int) h & mask; used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int findOrInsert(long key, long h, long now) {
+            int slot = find(key, h);
+            if (slot >= 0) {
+                return slot;
+            }
+            if ((size + 1) * 4 > keys.length * 3) {
+                rebuild(now);
+            }
+            int mask = keys.length - 1;
+            int i = (int) h & mask;
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = key;
+            counts[i] = 0;
+            lastFailure[i] = 0;
+            blockedUntil[i] = 0;
+            size++;
+            return i;
+        }
+
+        // 丢弃窗口外且未封禁的条目；仍然过满时扩容，达到上限后淘汰一半最久未失败的条目
+        private void rebuild(long now) {
+            int live = 0;
+            for (int i = 0; i < keys.length; i++) {
+                if (used[i] && !isExpired(i, now)) {
+                    live++;
+                }
+            }
+            long cutoff = Long.MIN_VALUE;
+            if (live >= maxEntriesPerStripe) {
+                long[] times = new long[live];
+                int n = 0;
+                for (int i = 0; i < keys.length; i++) {
+                    if (used[i] && !isExpired(i, now) && blockedUntil[i] <= now) {
+                        times[n++] = lastFailure[i];
+                    }
+                }
+                Arrays.sort(times, 0, n);
+                cutoff = n > 0 ? times[n / 2] : Long.MIN_VALUE;
+                live = live - n / 2;
+            }
+            int capacity = INITIAL_CAPACITY;
+            while (capacity * 3 < (live + 1) * 4 * 2) {
+                capacity <<= 1;
+            }
+
+            long[] oldKeys = keys;
+            boolean[] oldUsed = used;
+            int[] oldCounts = counts;
+            long[] oldLast = lastFailure;
+            long[] oldBlocked = blockedUntil;
+            keys = new long[capacity];
+            used = new boolean[capacity];
+            counts = new int[capacity];
+            lastFailure = new long[capacity];
+            blockedUntil = new long[capacity];
+            size = 0;
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (!oldUsed[i]) {
+                    continue;
+                }
+                boolean blocked = oldBlocked[i] > now;
+                if (!blocked && (!inWindow(oldLast[i], now) || oldLast[i] < cutoff)) {
+                    continue;
+                }
+                int j = (int) mix(oldKeys[i]) & mask;
+                while (used[j]) {
+                    j = (j + 1) & mask;
+                }
+                used[j] = true;
+                keys[j] = oldKeys[i];
+                counts[j] = oldCounts[i];
+                lastFailure[j] = oldLast[i];
+                blockedUntil[j] = oldBlocked[i];
+                size++;
+            }
+        }
+
+        private boolean isExpired(int i, long now) {
+            return blockedUntil[i] <= now && !inWindow(lastFailure[i], now);
+        }
+    }
+}
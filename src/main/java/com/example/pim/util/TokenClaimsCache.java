@@ -0,0 +1,52 @@
+package com.example.pim.util;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * 已验证JWT的有界缓存
+ * 以令牌的SHA-256摘要为键，缓存验签后的Claims，命中时跳过HS512验签和解析。
+ * 缓存条目在令牌过期时间与缓存TTL中较早的一个到达时失效。
+ */
+public class TokenClaimsCache extends ExpiringCache<String, Claims> {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final long ttlMillis;
+
+    public TokenClaimsCache(int maxSize, long ttlMillis) {
+        super(maxSize);
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * 计算令牌摘要，作为缓存键
+     */
+    public static String digest(String token) {
+        MessageDigest md = SHA256.get();
+        md.reset();
+        byte[] hash = md.digest(token.getBytes(StandardCharsets.US_ASCII));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    /**
+     * 缓存验签通过的Claims
+     */
+    public void put(String key, Claims claims) {
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        if (claims.getExpiration() != null) {
+            expiresAt = Math.min(expiresAt, claims.getExpiration().getTime());
+        }
+        put(key, claims, expiresAt);
+    }
+}
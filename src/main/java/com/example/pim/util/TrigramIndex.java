@@ -0,0 +1,344 @@
+package com.example.pim.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * 子串搜索用的三元组倒排索引
+ * 每个文档的文本按连续3个字符切分，三元组打包为long作为键，倒排表是按ID升序的int数组；
+ * 搜索时取关键字各三元组的倒排表求交集，再用原文核对，结果是按ID升序的全部匹配文档。
+ * 关键字少于3个字符时无法使用索引。读写由读写锁保护，可多线程并发搜索。
+ */
+public class TrigramIndex {
+
+    public static final int GRAM = 3;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final GramTable postings;
+    private final Map<Integer, String> texts;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public TrigramIndex() {
+        this(new GramTable(), new HashMap<>());
+    }
+
+    private TrigramIndex(GramTable postings, Map<Integer, String> texts) {
+        this.postings = postings;
+        this.texts = texts;
+    }
+
+    /**
+     * 并行构建索引：按ID顺序把文档分成若干段，各段独立建立倒排表后按段顺序拼接
+     * ids必须严格递增，texts与ids一一对应
+     */
+    public static TrigramIndex build(int[] ids, String[] texts, int parallelism) {
+        int chunks = Math.max(1, Math.min(parallelism * 4, ids.length / 1024 + 1));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            List<GramTable> parts = pool.submit(() -> IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> {
+                        GramTable part = new GramTable();
+                        int from = (int) ((long) ids.length * chunk / chunks);
+                        int to = (int) ((long) ids.length * (chunk + 1) / chunks);
+                        for (int i = from; i < to; i++) {
+                            for (long gram : grams(texts[i])) {
+                                part.getOrCreate(gram).append(ids[i]);
+                            }
+                        }
+                        return part;
+                    })
+                    .collect(Collectors.toList())).get();
+            GramTable postings = new GramTable();
+            for (GramTable part : parts) {
+                for (int slot = 0; slot < part.keys.length; slot++) {
+                    if (part.values[slot] != null) {
+                        postings.getOrCreate(part.keys[slot]).appendAll(part.values[slot]);
+                    }
+                }
+            }
+            for (PostingList list : postings.values) {
+                if (list != null) {
+                    list.trim();
+                }
+            }
+            Map<Integer, String> textMap = new HashMap<>(ids.length * 4 / 3 + 1);
+            for (int i = 0; i < ids.length; i++) {
+                textMap.put(ids[i], texts[i]);
+            }
+            return new TrigramIndex(postings, textMap);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("构建索引被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("构建索引失败", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // 添加或替换文档，只改动新旧文本之间有差异的三元组
+    public void put(int id, String text) {
+        long[] newGrams = grams(text);
+        lock.writeLock().lock();
+        try {
+            String old = texts.put(id, text);
+            long[] oldGrams = old != null ? grams(old) : new long[0];
+            for (long gram : oldGrams) {
+                if (Arrays.binarySearch(newGrams, gram) < 0) {
+                    removePosting(gram, id);
+                }
+            }
+            for (long gram : newGrams) {
+                if (Arrays.binarySearch(oldGrams, gram) < 0) {
+                    postings.getOrCreate(gram).add(id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            String old = texts.remove(id);
+            if (old != null) {
+                for (long gram : grams(old)) {
+                    removePosting(gram, id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removePosting(long gram, int id) {
+        PostingList list = postings.get(gram);
+        if (list != null) {
+            list.remove(id);
+        }
+    }
+
+    /**
+     * 返回文本包含关键字的全部文档ID，按升序排列
+     * 关键字需与建立索引时的文本使用相同的规范化方式，长度不少于3
+     */
+    public int[] search(String keyword) {
+        if (keyword.length() < GRAM) {
+            throw new IllegalArgumentException("关键字少于" + GRAM + "个字符，无法使用三元组索引");
+        }
+        long[] grams = grams(keyword);
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = new PostingList[grams.length];
+            for (int i = 0; i < grams.length; i++) {
+                lists[i] = postings.get(grams[i]);
+                if (lists[i] == null || lists[i].size == 0) {
+                    return EMPTY;
+                }
+            }
+            // 从最短的倒排表开始求交集
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            int[] candidates = Arrays.copyOf(lists[0].ids, lists[0].size);
+            int count = candidates.length;
+            for (int i = 1; i < lists.length && count > 0; i++) {
+                count = intersect(candidates, count, lists[i]);
+            }
+            // 三元组都出现不代表关键字连续出现，用原文核对
+            int matched = 0;
+            for (int i = 0; i < count; i++) {
+                if (keyword.length() == GRAM || texts.get(candidates[i]).contains(keyword)) {
+                    candidates[matched++] = candidates[i];
+                }
+            }
+            return Arrays.copyOf(candidates, matched);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 原地保留candidates前count个元素中也出现在list中的，返回保留的数量
+    private static int intersect(int[] candidates, int count, PostingList list) {
+        int kept = 0;
+        int from = 0;
+        for (int i = 0; i < count && from < list.size; i++) {
+            int pos = Arrays.binarySearch(list.ids, from, list.size, candidates[i]);
+            if (pos >= 0) {
+                candidates[kept++] = candidates[i];
+                from = pos + 1;
+            } else {
+                from = -pos - 1;
+            }
+        }
+        return kept;
+    }
+
+    public int getDocumentCount() {
+        lock.readLock().lock();
+        try {
+            return texts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 所有倒排表的元素总数
+    public long getPostingCount() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (PostingList list : postings.values) {
+                if (list != null) {
+                    count += list.size;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 文本中不重复的三元组，升序排列；每个字符占16位
+    private static long[] grams(String text) {
+        int n = text.length() - GRAM + 1;
+        if (n <= 0) {
+            return new long[0];
+        }
+        long[] grams = new long[n];
+        for (int i = 0; i < n; i++) {
+            grams[i] = (long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2);
+        }
+        Arrays.sort(grams);
+        int distinct = 1;
+        for (int i = 1; i < n; i++) {
+            if (grams[i] != grams[distinct - 1]) {
+                grams[distinct++] = grams[i];
+            }
+        }
+        return Arrays.copyOf(grams, distinct);
+    }
+
+    // 三元组到倒排表的开放寻址散列表，键不装箱；倒排表清空后保留，三元组的种类有限
+    private static final class GramTable {
+
+        private long[] keys = new long[1024];
+        private PostingList[] values = new PostingList[1024];
+        private int size;
+
+        private PostingList get(long gram) {
+            int mask = keys.length - 1;
+            for (int slot = hash(gram) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) {
+                    return values[slot];
+                }
+            }
+            return null;
+        }
+
+        private PostingList getOrCreate(long gram) {
+            int mask = keys.length - 1;
+            int slot = hash(gram) & mask;
+            for (; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == gram) {
+                    return values[slot];
+                }
+            }
+            PostingList list = new PostingList();
+            keys[slot] = gram;
+            values[slot] = list;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return list;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            PostingList[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new PostingList[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long gram) {
+            long h = gram * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ h >>> 32);
+        }
+    }
+
+    // 按升序保存文档ID的int数组，按需扩容
+    private static final class PostingList {
+
+        private int[] ids = new int[4];
+        private int size;
+
+        // 构建时ID按升序到达，直接追加
+        private void append(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            ids[size++] = id;
+        }
+
+        private void appendAll(PostingList other) {
+            if (size + other.size > ids.length) {
+                ids = Arrays.copyOf(ids, size + other.size);
+            }
+            System.arraycopy(other.ids, 0, ids, size, other.size);
+            size += other.size;
+        }
+
+        private void add(int id) {
+            if (size == 0 || ids[size - 1] < id) {
+                append(id);
+                return;
+            }
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size + (size >> 1) + 1);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        private boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        private void trim() {
+            if (ids.length > size) {
+                ids = Arrays.copyOf(ids, size);
+            }
+        }
+    }
+}
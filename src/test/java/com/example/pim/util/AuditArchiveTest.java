@@ -0,0 +1,186 @@
+package com.example.pim.util;
+
+import com.example.pim.entity.AdminOperationLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AuditArchiveTest {
+
+    private static final int SEGMENT_ROWS = 64;
+    private static final LocalDateTime MONTH_START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime MONTH_END = MONTH_START.plusMonths(1);
+    private static final Comparator<AdminOperationLog> TIME_ID_ORDER =
+            Comparator.comparing(AdminOperationLog::getOperationTime).thenComparing(AdminOperationLog::getId);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsColumnsAcrossSegmentsAndReopen() throws IOException {
+        List<AdminOperationLog> logs = logs(200);
+        AuditArchive archive = new AuditArchive(directory, SEGMENT_ROWS);
+        assertThat(write(archive, logs)).isEqualTo(4);
+
+        AuditArchive reopened = new AuditArchive(directory, SEGMENT_ROWS);
+        assertThat(reopened.getSegmentCount()).isEqualTo(4);
+        assertThat(reopened.getMaxId()).isEqualTo(logs.get(logs.size() - 1).getId());
+        assertThat(reopened.getArchivedBefore()).isEqualTo(MONTH_END);
+        assertThat(reopened.find(all(), true, 0, 1000)).containsExactlyElementsOf(logs);
+        List<AdminOperationLog> descending = new ArrayList<>(logs);
+        Collections.reverse(descending);
+        assertThat(reopened.find(all(), false, 0, 1000)).containsExactlyElementsOf(descending);
+    }
+
+    @Test
+    void filtersAndCountsMatchTheWrittenLogs() throws IOException {
+        List<AdminOperationLog> logs = logs(200);
+        AuditArchive archive = new AuditArchive(directory, SEGMENT_ROWS);
+        write(archive, logs);
+
+        LocalDateTime from = logs.get(30).getOperationTime();
+        LocalDateTime to = logs.get(150).getOperationTime();
+        AuditArchive.Query query = AuditArchive.Query.of("adm", "QUERY", null, from, to, true);
+        Predicate<AdminOperationLog> matches = log -> log.getAdminUsername().startsWith("adm")
+                && log.getOperationType().equals("QUERY") && log.getResult().equals("SUCCESS")
+                && !log.getOperationTime().isBefore(from) && !log.getOperationTime().isAfter(to);
+        List<AdminOperationLog> expected = logs.stream().filter(matches).collect(Collectors.toList());
+
+        assertThat(archive.find(query, true, 0, 1000)).containsExactlyElementsOf(expected);
+        assertThat(archive.count(query, Long.MAX_VALUE)).isEqualTo(expected.size());
+        assertThat(archive.count(query, 5)).isEqualTo(5);
+        // 没有筛选条件时直接使用文件头中的行数
+        assertThat(archive.count(all(), Long.MAX_VALUE)).isEqualTo(logs.size());
+        // 合并记录按其代表的操作次数计数
+        Map<String, Long> byType = archive.countByOperationType(all());
+        assertThat(byType).containsOnlyKeys("QUERY", "UPDATE");
+        assertThat(byType.get("QUERY")).isEqualTo(logs.stream().filter(l -> l.getOperationType().equals("QUERY"))
+                .mapToLong(AdminOperationLog::getOccurrences).sum());
+        assertThat(archive.find(AuditArchive.Query.of(null, "DELETE", null, null, null, null), true, 0, 10))
+                .isEmpty();
+    }
+
+    @Test
+    void pagesByOffsetAndCursorAcrossSegments() throws IOException {
+        List<AdminOperationLog> logs = logs(200);
+        AuditArchive archive = new AuditArchive(directory, SEGMENT_ROWS);
+        write(archive, logs);
+
+        // 第60到69条跨越第一个和第二个段的边界
+        assertThat(archive.find(all(), true, 60, 10)).containsExactlyElementsOf(logs.subList(60, 70));
+        assertThat(archive.find(all(), false, 190, 20)).hasSize(10);
+
+        // 游标取一条与前一条时间相同的日志，同一时间内按ID比较
+        AdminOperationLog cursor = logs.get(131);
+        assertThat(cursor.getOperationTime()).isEqualTo(logs.get(130).getOperationTime());
+        AuditArchive.Query before = all().before(cursor.getOperationTime(), cursor.getId());
+        List<AdminOperationLog> expected = new ArrayList<>(logs.subList(121, 131));
+        Collections.reverse(expected);
+        assertThat(archive.find(before, false, 0, 10)).containsExactlyElementsOf(expected);
+        assertThat(archive.count(before, Long.MAX_VALUE)).isEqualTo(131);
+    }
+
+    @Test
+    void replacesPartitionSegmentsAndDeletesExpiredOnes() throws IOException {
+        AuditArchive archive = new AuditArchive(directory, SEGMENT_ROWS);
+        write(archive, logs(200));
+        assertThat(archive.count(all(), Long.MAX_VALUE)).isEqualTo(200);
+
+        // 同一分区重新归档时替换此前的段，统计缓存随段列表失效
+        List<AdminOperationLog> rewritten = logs(100);
+        write(archive, rewritten);
+        assertThat(archive.getSegmentCount()).isEqualTo(2);
+        assertThat(segmentFiles()).hasSize(2);
+        assertThat(archive.count(all(), Long.MAX_VALUE)).isEqualTo(100);
+        assertThat(archive.find(all(), true, 0, 1000)).containsExactlyElementsOf(rewritten);
+
+        assertThat(archive.deleteBefore(MONTH_START)).isNull();
+        assertThat(archive.deleteBefore(MONTH_END)).isEqualTo(MONTH_END);
+        assertThat(archive.getSegmentCount()).isZero();
+        assertThat(archive.getMaxId()).isZero();
+        assertThat(segmentFiles()).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedColumnBlock() throws IOException {
+        AuditArchive archive = new AuditArchive(directory, SEGMENT_ROWS);
+        write(archive, logs(SEGMENT_ROWS));
+        // 文件头：3个int和5个long之后是列表，ID列的压缩后长度位于偏移(52 + 8)处，改为一半模拟截断的块
+        try (FileChannel channel = FileChannel.open(segmentFiles().get(0), StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, 60);
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, length.getInt(0) / 2), 60);
+        }
+
+        AuditArchive reopened = new AuditArchive(directory, SEGMENT_ROWS);
+        assertThatThrownBy(() -> reopened.find(all(), true, 0, 10))
+                .isInstanceOf(UncheckedIOException.class)
+                .hasCauseInstanceOf(IOException.class);
+    }
+
+    private static int write(AuditArchive archive, List<AdminOperationLog> logs) throws IOException {
+        AuditArchive.Writer writer = archive.writer("p202403", MONTH_START, MONTH_END);
+        for (AdminOperationLog log : logs) {
+            writer.append(log);
+        }
+        return writer.finish();
+    }
+
+    private static AuditArchive.Query all() {
+        return AuditArchive.Query.of(null, null, null, null, null, null);
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(p -> p.getFileName().toString().endsWith(".arc")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // 覆盖各列的编码：ID间隔不等且很大，时间精确到微秒且每两条相同，可为null的数值含负数，字符串含null和大量不同取值
+    private static List<AdminOperationLog> logs(int count) {
+        List<AdminOperationLog> logs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AdminOperationLog log = new AdminOperationLog();
+            log.setId(1_000_000_000_000L + i * 3L + (i % 5));
+            log.setAdminId(i % 7 == 0 ? null : (long) (i % 3));
+            log.setAdminUsername(i % 4 == 0 ? "root" : "admin" + (i % 3));
+            log.setOperationType(i % 3 == 0 ? "UPDATE" : "QUERY");
+            log.setObjectType("USER");
+            log.setObjectId(i % 11 == 0 ? null : (long) (i % 2 == 0 ? i : -i));
+            log.setObjectName(i % 9 == 0 ? null : "用户" + i);
+            log.setResult(i % 10 == 0 ? "FAILURE" : "SUCCESS");
+            log.setOperationTime(MONTH_START.plusSeconds(i / 2).plusNanos(123_000L));
+            log.setIpAddress(i % 6 == 0 ? null : "10.0.0." + (i % 4));
+            if (i % 8 == 0) {
+                log.setOccurrences(1 + i % 13);
+                log.setLastOperationTime(log.getOperationTime().plusNanos(4_567_000L));
+            } else {
+                log.setOccurrences(1);
+            }
+            logs.add(log);
+        }
+        logs.sort(TIME_ID_ORDER);
+        return logs;
+    }
+}
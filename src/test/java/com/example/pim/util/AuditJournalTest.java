@@ -0,0 +1,186 @@
+package com.example.pim.util;
+
+import com.example.pim.entity.AdminOperationLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditJournalTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 12, 0);
+    private static final long ONE_HOUR = 3_600_000L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsAllFieldsAcrossReopen() throws IOException {
+        AdminOperationLog full = log(T0, "UPDATE");
+        AdminOperationLog sparse = new AdminOperationLog();
+        sparse.setAdminUsername("");
+        sparse.setOperationType("QUERY");
+        sparse.setObjectType("USER");
+        sparse.setResult("FAILURE");
+        sparse.setOperationTime(T0.plusSeconds(1));
+        AdminOperationLog coalesced = log(T0.plusSeconds(2), "QUERY");
+        coalesced.setOccurrences(7);
+        coalesced.setLastOperationTime(T0.plusSeconds(50));
+
+        try (AuditJournal journal = open(1 << 16, 4)) {
+            assertThat(journal.append(full)).isEqualTo(1);
+            assertThat(journal.append(sparse)).isEqualTo(2);
+            assertThat(journal.append(coalesced)).isEqualTo(3);
+        }
+        try (AuditJournal journal = open(1 << 16, 4)) {
+            assertThat(scanAll(journal)).containsExactly(full, sparse, coalesced);
+            assertThat(journal.getOperationTypes()).containsExactlyInAnyOrder("UPDATE", "QUERY");
+        }
+    }
+
+    @Test
+    void rollsSegmentsAndQueriesThroughSparseIndexAfterReopen() throws IOException {
+        List<AdminOperationLog> written = new ArrayList<>();
+        try (AuditJournal journal = open(4096, 4)) {
+            for (int i = 0; i < 200; i++) {
+                // 第100条的时间早于其他记录，所在块的时间范围必须覆盖它
+                LocalDateTime time = i == 100 ? T0.minusHours(1) : T0.plusSeconds(i);
+                AdminOperationLog log = log(time, i % 2 == 0 ? "QUERY" : "UPDATE");
+                journal.append(log);
+                written.add(log);
+            }
+        }
+        List<Path> segments = files(".seg");
+        assertThat(segments).hasSizeGreaterThan(1);
+        assertThat(files(".idx")).hasSameSizeAs(segments);
+        // 关闭的段截掉了映射时预留的空白部分
+        for (Path segment : segments) {
+            assertThat(Files.size(segment)).isLessThan(4096);
+        }
+
+        try (AuditJournal journal = open(4096, 4)) {
+            assertThat(scanAll(journal)).containsExactlyElementsOf(written);
+            List<AdminOperationLog> range = new ArrayList<>();
+            journal.scan(T0.plusSeconds(50), T0.plusSeconds(59), range::add);
+            assertThat(range).extracting(AdminOperationLog::getId)
+                    .containsExactlyInAnyOrder(51L, 52L, 53L, 54L, 55L, 56L, 57L, 58L, 59L, 60L);
+            List<AdminOperationLog> early = new ArrayList<>();
+            journal.scan(null, T0.minusMinutes(1), early::add);
+            assertThat(early).extracting(AdminOperationLog::getId).containsExactly(101L);
+            assertThat(journal.getOperationTypes()).containsExactlyInAnyOrder("QUERY", "UPDATE");
+            assertThat(journal.append(log(T0.plusHours(1), "QUERY"))).isEqualTo(201);
+        }
+    }
+
+    @Test
+    void discardsTornLastRecordAfterCrash() throws IOException {
+        AuditJournal crashed = open(1 << 16, 4);
+        List<AdminOperationLog> written = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            AdminOperationLog log = log(T0.plusSeconds(i), "QUERY");
+            crashed.append(log);
+            written.add(log);
+        }
+        crashed.force();
+        // 不关闭，模拟进程在写下一条记录时中断：只落盘了长度和一半的ID
+        Path segment = files(".seg").get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = endOfRecords(channel);
+            ByteBuffer torn = ByteBuffer.allocate(Integer.BYTES + Integer.BYTES).putInt(80).putInt(0);
+            torn.flip();
+            channel.write(torn, end);
+        }
+
+        try (AuditJournal journal = open(1 << 16, 4)) {
+            assertThat(scanAll(journal)).containsExactlyElementsOf(written);
+            AdminOperationLog next = log(T0.plusSeconds(10), "UPDATE");
+            assertThat(journal.append(next)).isEqualTo(11);
+            written.add(next);
+        }
+        try (AuditJournal journal = open(1 << 16, 4)) {
+            assertThat(scanAll(journal)).containsExactlyElementsOf(written);
+        }
+    }
+
+    @Test
+    void truncatesOversizedFieldsAtCharacterBoundary() throws IOException {
+        StringBuilder name = new StringBuilder("ab");
+        for (int i = 0; i < 20000; i++) {
+            name.append('中');
+        }
+        AdminOperationLog oversized = log(T0, "QUERY");
+        oversized.setObjectName(name.toString());
+        AdminOperationLog after = log(T0.plusSeconds(1), "UPDATE");
+
+        try (AuditJournal journal = open(1 << 20, 4)) {
+            journal.append(oversized);
+            journal.append(after);
+        }
+        try (AuditJournal journal = open(1 << 20, 4)) {
+            List<AdminOperationLog> logs = scanAll(journal);
+            // 32767字节落在第10922个汉字中间，退回到该字符之前：2 + 3 * 10921 = 32765字节
+            assertThat(logs.get(0).getObjectName()).isEqualTo(name.substring(0, 2 + 10921));
+            assertThat(logs.get(1)).isEqualTo(after);
+        }
+    }
+
+    private AuditJournal open(int segmentSize, int indexInterval) throws IOException {
+        return new AuditJournal(directory, segmentSize, ONE_HOUR, indexInterval, 2);
+    }
+
+    private static List<AdminOperationLog> scanAll(AuditJournal journal) {
+        List<AdminOperationLog> logs = new ArrayList<>();
+        journal.scan(null, null, logs::add);
+        logs.sort(Comparator.comparing(AdminOperationLog::getId));
+        return logs;
+    }
+
+    private List<Path> files(String suffix) throws IOException {
+        try (Stream<Path> stream = Files.list(directory)) {
+            return stream.filter(p -> p.getFileName().toString().endsWith(suffix)).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // 按记录长度跳过完整的记录，返回第一个空白位置
+    private static long endOfRecords(FileChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        long position = 0;
+        while (true) {
+            length.clear();
+            channel.read(length, position);
+            int value = length.getInt(0);
+            if (value == 0) {
+                return position;
+            }
+            position += value;
+        }
+    }
+
+    private static AdminOperationLog log(LocalDateTime time, String operationType) {
+        AdminOperationLog log = new AdminOperationLog();
+        log.setAdminId(1L);
+        log.setAdminUsername("admin");
+        log.setOperationType(operationType);
+        log.setObjectType("USER");
+        log.setObjectId(42L);
+        log.setObjectName("用户42");
+        log.setResult("SUCCESS");
+        log.setOperationTime(time);
+        log.setIpAddress("127.0.0.1");
+        return log;
+    }
+}
@@ -54,7 +54,13 @@ export default new Vuex.Store({
         throw error
       }
     },
-    logout({ commit }) {
+    logout({ commit, state }) {
+      // 通知后端撤销当前令牌，失败不影响本地退出
+      if (state.token) {
+        axios.post('/auth/logout', null, {
+          headers: { Authorization: `Bearer ${state.token}` }
+        }).catch(() => {})
+      }
       commit('LOGOUT')
     },
     // 刷新用户信息